@@ -0,0 +1,122 @@
+package packing.algorithm;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to bound every five-block cut of a root node, one row at a time with the
+ * {@link BoundKernel} against one cut at a time as {@code cut_bound} did.
+ * <p>
+ * Both enumerate the non-symmetrical cuts, cap each bound at the upper bound of the node
+ * and keep those above its lower bound, as the first pass of {@link CutQueue} does. The
+ * bound table is filled during setup, so only the enumeration is measured. Lives in the
+ * algorithm package because the kernel and the table are package-private.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CutBoundBenchmark {
+
+    @Param({"100x100/7x5", "250x200/11x7", "1200x800/115x72"})
+    public String instance;
+
+    private int L0, W0, zlb, zub, nx, ny;
+    private int[] X, Y;
+    private BoundTable bounds;
+    private final BoundKernel kernel = new BoundKernel();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] sides = instance.split("/");
+        String[] pallet = sides[0].split("x");
+        String[] box = sides[1].split("x");
+        L0 = Integer.parseInt(pallet[0]);
+        W0 = Integer.parseInt(pallet[1]);
+        int l = Integer.parseInt(box[0]), w = Integer.parseInt(box[1]);
+
+        XYGenerator xy_gen = new XYGenerator(L0, W0, l, w);
+        X = xy_gen.get_X();
+        Y = xy_gen.get_Y();
+        nx = xy_gen.get_X_length(L0, W0);
+        ny = xy_gen.get_Y_length(L0, W0);
+        bounds = new BoundTable(xy_gen, BoundProvider.DEFAULT, l, w);
+        for (int ix = 0; ix < xy_gen.get_X_size(); ix++) bounds.row(X[ix]);
+        zlb = RecursiveBDModule.compute_zlb(L0, W0, l, w);
+        zub = bounds.get(L0, W0);
+
+        long row = row(), cut = cut();
+        if (row != cut) throw new IllegalStateException("kernel " + row + " != per-cut " + cut);
+    }
+
+    /**
+     * Count and bound sum of the kept cuts, row by row
+     */
+    @Benchmark
+    public long row() {
+        kernel.start(bounds, W0, Y, ny);
+        long kept = 0, sum = 0;
+        for (int a = 0; a < nx; a++) {
+            for (int b = a; b < nx; b++) {
+                int x1 = X[a], x2 = X[b];
+                for (int c = 0; c < ny; c++) {
+                    int y1 = Y[c];
+                    int from = RecursiveBDModule.isSymmetrical(L0, W0, x1, x2, y1, y1) ? c + 1 : c;
+                    int limit = RecursiveBDModule.open_limit(L0, W0, x1, x2, y1);
+                    int i = Arrays.binarySearch(Y, c + 1, ny, limit);
+                    int to = i >= 0 ? i + 1 : -i - 1;
+
+                    int row_kept = kernel.row(bounds, L0, W0, x1, x2, y1, Y, from, to, zlb, zub, zub);
+                    for (int k = 0; k < row_kept; k++) sum += kernel.survivor_bounds[k];
+                    kept += row_kept;
+                }
+            }
+        }
+        return 31 * kept + sum;
+    }
+
+    /**
+     * Count and bound sum of the kept cuts, with a symmetry check and five table lookups
+     * per cut
+     */
+    @Benchmark
+    public long cut() {
+        long kept = 0, sum = 0;
+        for (int a = 0; a < nx; a++) {
+            for (int b = a; b < nx; b++) {
+                int x1 = X[a], x2 = X[b];
+                for (int c = 0; c < ny; c++) {
+                    int y1 = Y[c];
+                    for (int d = c; d < ny; d++) {
+                        int y2 = Y[d];
+                        if (RecursiveBDModule.isSymmetrical(L0, W0, x1, x2, y1, y2)) continue;
+                        int bound = Math.min(zub, bounds.get(x1, W0 - y1)
+                                + bounds.get(L0 - x1, W0 - y2)
+                                + bounds.get(x2 - x1, y2 - y1)
+                                + bounds.get(x2, y1)
+                                + bounds.get(L0 - x2, y2));
+                        if (bound <= zlb) continue;
+                        sum += bound;
+                        kept++;
+                    }
+                }
+            }
+        }
+        return 31 * kept + sum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CutBoundBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,98 @@
+package packing.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import packing.algorithm.RecursiveBDModule;
+import packing.algorithm.SubproblemCache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@code palletLoading} over a fixed instance suite.
+ * <p>
+ * Instances are written as {@code L0xW0/l0xw0}: the Cover I/II-style instances are
+ * small pallets with up to about 100 boxes that are known to be hard for block
+ * heuristics, the industrial ones are EUR/ISO/GMA pallets in millimetres. Every solve
+ * starts from an empty subproblem cache, as the solver's own cache would otherwise answer
+ * all but the first one.
+ * Run with {@code java -jar target/benchmarks.jar -prof gc} to add the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PalletLoadingBenchmark {
+
+    @Param({
+            // Cover I/II-style instances
+            "42x39/9x4",
+            "43x26/7x3",
+            "49x28/8x3",
+            "57x34/7x4",
+            "61x35/10x3",
+            "63x44/8x5",
+            "67x37/11x3",
+            "86x82/15x7",
+            "100x100/7x5",
+            // Industrial pallets
+            "1200x1000/185x125",
+            "1219x1016/160x110",
+            "1200x1000/145x95",
+            "1200x800/115x72"
+    })
+    public String instance;
+
+    @Param({"1", "2", "3"})
+    public int N0;
+
+    @Param({"false"})
+    public boolean parallel;
+
+    private int L0, W0, l0, w0;
+    private RecursiveBDModule solver;
+
+    /**
+     * Solution count of the last solve, reported next to the throughput
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Solution {
+        public long count;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] sides = instance.split("/");
+        String[] pallet = sides[0].split("x");
+        String[] box = sides[1].split("x");
+        L0 = Integer.parseInt(pallet[0]);
+        W0 = Integer.parseInt(pallet[1]);
+        l0 = Integer.parseInt(box[0]);
+        w0 = Integer.parseInt(box[1]);
+        solver = parallel ? new RecursiveBDModule() : new RecursiveBDModule(null);
+    }
+
+    @Benchmark
+    public RecursiveBDModule.Result palletLoading(Solution solution) {
+        RecursiveBDModule.Result result = solver.palletLoading(L0, W0, 0, N0, l0, w0, 0, 0, new SubproblemCache());
+        solution.count = result.getCount();
+        return result;
+    }
+
+    /**
+     * Run the whole suite with the GC profiler attached
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PalletLoadingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
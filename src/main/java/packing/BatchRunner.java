@@ -0,0 +1,462 @@
+package packing;
+
+import packing.algorithm.BlockList;
+import packing.algorithm.PalletInstance;
+import packing.algorithm.RecursiveBDModule;
+import packing.algorithm.SolutionStore;
+import packing.algorithm.SolveControl;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless batch runner: solves a stream of instances and streams the results back.
+ * <p>
+ * Instances are read one per line from a file or stdin, either as CSV {@code L,W,l,w[,N]}
+ * (an optional header line, blank lines and {@code #} comments are skipped) or as JSONL
+ * objects {@code {"id": ..., "L": ..., "W": ..., "l": ..., "w": ..., "N": ...}}. They are
+ * solved on a fixed pool of workers, each with its own sequential solver, and the results
+ * are written in input order with the solve time of every instance. A reorder buffer of
+ * bounded size holds the results that finished ahead of their turn; reading waits while it
+ * is full, so memory stays constant however long the input is.
+ * <pre>
+ * java packing.BatchRunner [--format csv|jsonl] [--workers K] [--window K] [--depth N]
+ *                          [--timeout MS] [--store FILE] [--blocks] [--out FILE] [FILE | -]
+ * </pre>
+ */
+public class BatchRunner {
+    private static final String CSV_HEADER = "index,L,W,l,w,N,count,optimal,stopped,ms";
+
+    enum Format { CSV, JSONL }
+
+    private volatile Format format;  // null until the first instance line is seen
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private int window = 0;  // 0 means four results per worker
+    private int depth = 3;
+    private long timeout_ms = 0;
+    private boolean with_blocks = false;
+    private Path store_path;
+
+    private ExecutorService pool;
+    private SolutionStore store;
+    private ThreadLocal<RecursiveBDModule> solvers;
+    private long errors;
+
+    public static void main(String[] args) throws Exception {
+        BatchRunner runner = new BatchRunner();
+        String input = "-", output = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--format" -> runner.format = Format.valueOf(value(args, ++i).toUpperCase(Locale.ROOT));
+                    case "--workers" -> runner.workers = positive(args, ++i);
+                    case "--window" -> runner.window = positive(args, ++i);
+                    case "--depth" -> runner.depth = positive(args, ++i);
+                    case "--timeout" -> runner.timeout_ms = positive(args, ++i);
+                    case "--store" -> runner.store_path = Path.of(value(args, ++i));
+                    case "--blocks" -> runner.with_blocks = true;
+                    case "--out" -> output = value(args, ++i);
+                    default -> {
+                        if (args[i].startsWith("--")) throw new IllegalArgumentException("unknown option " + args[i]);
+                        input = args[i];
+                        if (runner.format == null) runner.format = format_of(input);
+                    }
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: java packing.BatchRunner [--format csv|jsonl] [--workers K] [--window K]"
+                    + " [--depth N] [--timeout MS] [--store FILE] [--blocks] [--out FILE] [FILE | -]");
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        long solved;
+        try (BufferedReader in = input.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(input));
+             Writer out = output == null
+                     ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                     : Files.newBufferedWriter(Path.of(output))) {
+            solved = runner.run(in, out);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("solved %d instances in %.3f s (%.1f/s), %d errors%n",
+                solved, seconds, solved / seconds, runner.errors);
+        if (runner.errors > 0) System.exit(1);
+    }
+
+    /**
+     * Solve every instance of the input and write the results in input order.
+     * Returns the number of instances read.
+     */
+    public long run(BufferedReader in, Writer out) throws IOException, InterruptedException {
+        int capacity = window > 0 ? window : 4 * workers;
+        ReorderBuffer buffer = new ReorderBuffer(capacity);
+        pool = Executors.newFixedThreadPool(workers, task -> {
+            Thread thread = new Thread(task, "batch-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (store_path != null) store = new SolutionStore(store_path);
+        solvers = ThreadLocal.withInitial(() -> {
+            RecursiveBDModule solver = new RecursiveBDModule(null);
+            solver.setSolutionStore(store);
+            return solver;
+        });
+
+        // Read and dispatch on a thread of its own while this one writes
+        IOException[] read_failure = new IOException[1];
+        Thread reader = new Thread(() -> {
+            try {
+                dispatch(in, buffer);
+            } catch (IOException e) {
+                read_failure[0] = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                buffer.close();
+            }
+        }, "batch-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        try {
+            boolean header = false;
+            for (String record = buffer.poll(); ; record = buffer.poll()) {
+                if (record == null) {
+                    out.flush();  // nothing ready, so let readers of the output catch up
+                    record = buffer.take();
+                    if (record == null) break;
+                }
+                if (!header && format == Format.CSV) {
+                    out.write(with_blocks ? CSV_HEADER + ",blocks\n" : CSV_HEADER + "\n");
+                }
+                header = true;
+                out.write(record);
+                out.write('\n');
+            }
+            out.flush();
+            reader.join();
+        } finally {
+            pool.shutdownNow();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+            if (store != null) store.close();
+        }
+        if (read_failure[0] != null) throw read_failure[0];
+        return buffer.issued();
+    }
+
+    /**
+     * Hand every instance line to the pool, waiting while the reorder buffer is full
+     */
+    private void dispatch(BufferedReader in, ReorderBuffer buffer) throws IOException, InterruptedException {
+        boolean first = true;
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            String text = line.strip();
+            if (text.isEmpty() || text.startsWith("#")) continue;
+            if (format == null) format = text.startsWith("{") ? Format.JSONL : Format.CSV;
+
+            // A CSV header names the columns instead of giving sizes
+            boolean is_header = first && format == Format.CSV && !Character.isDigit(text.charAt(0));
+            first = false;
+            if (is_header) continue;
+
+            long index = buffer.reserve();
+            pool.execute(() -> {
+                String record = null;
+                try {
+                    record = solve(index, text);
+                } catch (RuntimeException e) {
+                    record = error(index, e.getMessage());
+                } finally {
+                    buffer.put(index, record != null ? record : error(index, "solver failed"));
+                }
+            });
+        }
+    }
+
+    /**
+     * Solve one instance line and format its result
+     */
+    private String solve(long index, String text) {
+        String id = null;
+        int[] sizes;  // L, W, l, w, N
+        if (format == Format.JSONL) {
+            Map<String, String> fields = parse_object(text);
+            id = fields.get("id");
+            sizes = new int[]{
+                    integer(fields, "L", "L0"), integer(fields, "W", "W0"),
+                    integer(fields, "l", "l0"), integer(fields, "w", "w0"),
+                    fields.containsKey("N") || fields.containsKey("N0") ? integer(fields, "N", "N0") : depth};
+        } else {
+            String[] parts = text.split(",");
+            if (parts.length < 4 || parts.length > 5)
+                throw new IllegalArgumentException("expected L,W,l,w[,N]: " + text);
+            sizes = new int[]{0, 0, 0, 0, depth};
+            for (int i = 0; i < parts.length; i++) sizes[i] = parse_int(parts[i].strip());
+        }
+        PalletInstance instance = new PalletInstance(sizes[0], sizes[1], sizes[4], sizes[2], sizes[3]);
+
+        SolveControl control = timeout_ms > 0 ? new SolveControl(timeout_ms, TimeUnit.MILLISECONDS)
+                : new SolveControl();
+        long start = System.nanoTime();
+        RecursiveBDModule.Result result = solvers.get().palletLoading(instance.getL0(), instance.getW0(), 0,
+                instance.getN0(), instance.getBoxL(), instance.getBoxW(), control, null);
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        return format == Format.JSONL
+                ? jsonl_record(index, id, instance, result, millis)
+                : csv_record(index, instance, result, millis);
+    }
+
+    private String csv_record(long index, PalletInstance instance, RecursiveBDModule.Result result, double millis) {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(index).append(',').append(instance.getL0()).append(',').append(instance.getW0())
+                .append(',').append(instance.getBoxL()).append(',').append(instance.getBoxW())
+                .append(',').append(instance.getN0()).append(',').append(result.getCount())
+                .append(',').append(result.isProvenOptimal()).append(',').append(result.isStopped())
+                .append(',').append(String.format(Locale.ROOT, "%.3f", millis));
+        if (with_blocks) {
+            sb.append(',');
+            BlockList blocks = result.getBlockList();
+            for (int i = 0; i < blocks.size(); i++) {
+                if (i > 0) sb.append(';');
+                sb.append(blocks.getX(i)).append(':').append(blocks.getY(i))
+                        .append(':').append(blocks.getL(i)).append(':').append(blocks.getW(i));
+            }
+        }
+        return sb.toString();
+    }
+
+    private String jsonl_record(long index, String id, PalletInstance instance,
+                                RecursiveBDModule.Result result, double millis) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"index\":").append(index);
+        if (id != null) sb.append(",\"id\":").append(quote(id));
+        sb.append(",\"L\":").append(instance.getL0()).append(",\"W\":").append(instance.getW0())
+                .append(",\"l\":").append(instance.getBoxL()).append(",\"w\":").append(instance.getBoxW())
+                .append(",\"N\":").append(instance.getN0()).append(",\"count\":").append(result.getCount())
+                .append(",\"optimal\":").append(result.isProvenOptimal())
+                .append(",\"stopped\":").append(result.isStopped())
+                .append(",\"ms\":").append(String.format(Locale.ROOT, "%.3f", millis));
+        if (with_blocks) {
+            sb.append(",\"blocks\":[");
+            BlockList blocks = result.getBlockList();
+            for (int i = 0; i < blocks.size(); i++) {
+                if (i > 0) sb.append(',');
+                sb.append('[').append(blocks.getX(i)).append(',').append(blocks.getY(i))
+                        .append(',').append(blocks.getL(i)).append(',').append(blocks.getW(i)).append(']');
+            }
+            sb.append(']');
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Record of an instance that could not be solved; the run goes on with the next one
+     */
+    private String error(long index, String message) {
+        synchronized (this) {
+            errors++;
+        }
+        String text = message == null ? "error" : message;
+        System.err.println("instance " + index + ": " + text);
+        return format == Format.JSONL
+                ? "{\"index\":" + index + ",\"error\":" + quote(text) + "}"
+                : index + ",error," + text.replace(',', ' ').replace('\n', ' ');
+    }
+
+    private static Format format_of(String input) {
+        if (input.endsWith(".jsonl") || input.endsWith(".ndjson")) return Format.JSONL;
+        if (input.endsWith(".csv")) return Format.CSV;
+        return null;  // decided by the first line
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) throw new IllegalArgumentException("missing value for " + args[i - 1]);
+        return args[i];
+    }
+
+    private static int positive(String[] args, int i) {
+        int value = parse_int(value(args, i));
+        if (value <= 0) throw new IllegalArgumentException(args[i - 1] + " must be positive: " + value);
+        return value;
+    }
+
+    private static int parse_int(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not an integer: " + text);
+        }
+    }
+
+    private static int integer(Map<String, String> fields, String name, String alias) {
+        String text = fields.containsKey(name) ? fields.get(name) : fields.get(alias);
+        if (text == null) throw new IllegalArgumentException("missing field " + name);
+        return parse_int(text);
+    }
+
+    /**
+     * Fields of a flat JSON object, with strings unescaped and other values as written
+     */
+    static Map<String, String> parse_object(String text) {
+        Map<String, String> fields = new HashMap<>();
+        int[] pos = {0};
+        expect(text, pos, '{');
+        if (peek(text, pos) == '}') {
+            pos[0]++;
+            return fields;
+        }
+        while (true) {
+            String key = parse_string(text, pos);
+            expect(text, pos, ':');
+            String value;
+            if (peek(text, pos) == '"') {
+                value = parse_string(text, pos);
+            } else {
+                int start = pos[0];
+                while (pos[0] < text.length() && ",} \t".indexOf(text.charAt(pos[0])) < 0) pos[0]++;
+                value = text.substring(start, pos[0]);
+                if (value.isEmpty() || value.startsWith("{") || value.startsWith("["))
+                    throw new IllegalArgumentException("expected a string, number or literal for " + key);
+            }
+            fields.put(key, value);
+            char c = peek(text, pos);
+            pos[0]++;
+            if (c == '}') return fields;
+            if (c != ',') throw new IllegalArgumentException("expected ',' or '}' at " + (pos[0] - 1));
+        }
+    }
+
+    private static char peek(String text, int[] pos) {
+        while (pos[0] < text.length() && Character.isWhitespace(text.charAt(pos[0]))) pos[0]++;
+        if (pos[0] >= text.length()) throw new IllegalArgumentException("unexpected end of object");
+        return text.charAt(pos[0]);
+    }
+
+    private static void expect(String text, int[] pos, char c) {
+        if (peek(text, pos) != c) throw new IllegalArgumentException("expected '" + c + "' at " + pos[0]);
+        pos[0]++;
+    }
+
+    private static String parse_string(String text, int[] pos) {
+        expect(text, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        while (pos[0] < text.length()) {
+            char c = text.charAt(pos[0]++);
+            if (c == '"') return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos[0] >= text.length()) break;
+            char e = text.charAt(pos[0]++);
+            switch (e) {
+                case 'n' -> sb.append('\n');
+                case 't' -> sb.append('\t');
+                case 'r' -> sb.append('\r');
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'u' -> {
+                    if (pos[0] + 4 > text.length()) throw new IllegalArgumentException("bad escape");
+                    sb.append((char) Integer.parseInt(text.substring(pos[0], pos[0] + 4), 16));
+                    pos[0] += 4;
+                }
+                default -> sb.append(e);
+            }
+        }
+        throw new IllegalArgumentException("unterminated string");
+    }
+
+    static String quote(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Fixed ring of result slots indexed by input position.
+     * <p>
+     * The reader reserves the next index, waiting while that many results are already
+     * pending; workers fill slots in any order; the writer drains them strictly in order.
+     */
+    static final class ReorderBuffer {
+        private final String[] slots;
+        private long issued;  // indexes handed to the reader so far
+        private long next;    // index the writer needs next
+        private boolean closed;
+
+        ReorderBuffer(int capacity) {
+            this.slots = new String[capacity];
+        }
+
+        synchronized long reserve() throws InterruptedException {
+            while (issued - next >= slots.length) wait();
+            return issued++;
+        }
+
+        synchronized void put(long index, String record) {
+            slots[(int) (index % slots.length)] = record;
+            if (index == next) notifyAll();
+        }
+
+        /**
+         * Next record in order if it is ready, otherwise null
+         */
+        synchronized String poll() {
+            int slot = (int) (next % slots.length);
+            String record = next < issued ? slots[slot] : null;
+            if (record != null) {
+                slots[slot] = null;
+                next++;
+                notifyAll();
+            }
+            return record;
+        }
+
+        /**
+         * Next record in order, waiting for it; null once the input is exhausted
+         */
+        synchronized String take() throws InterruptedException {
+            while (true) {
+                String record = poll();
+                if (record != null) return record;
+                if (closed && next == issued) return null;
+                wait();
+            }
+        }
+
+        /**
+         * No more indexes will be reserved
+         */
+        synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        synchronized long issued() {
+            return issued;
+        }
+    }
+}
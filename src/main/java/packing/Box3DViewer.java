@@ -2,19 +2,32 @@ package packing;
 
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.*;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.input.ScrollEvent;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.Box;
+import javafx.scene.shape.CullFace;
 import javafx.scene.shape.DrawMode;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
 import javafx.scene.transform.Rotate;
 import javafx.scene.transform.Translate;
 import javafx.stage.Stage;
-import packing.algorithm.RecursiveBDModule;
+import packing.algorithm.LayerLoading;
+import packing.algorithm.SolveControl;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public class Box3DViewer extends Application {
 
@@ -44,6 +57,19 @@ public class Box3DViewer extends Application {
         }
     }
 
+    /**
+     * Box count from which placements are merged into one mesh per material
+     */
+    static final int MERGE_THRESHOLD = 1000;
+
+    private final ExecutorService solver = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "viewer-solver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicReference<LayerLoading.Result> pending = new AtomicReference<>();  // load not shown yet
+    private SolveControl control;
+
     private double anchorX, anchorY;
     private double angleX = 0;
     private double angleY = 0;
@@ -63,17 +89,22 @@ public class Box3DViewer extends Application {
         scene.setFill(Color.LIGHTGRAY);
         scene.setCamera(camera);
 
-        //(42,39,9,4),
-        int L0 = 42;
-        int W0 = 39;
-        int n = 0;
-        int N0 = 3;
-        int l0 = 9;
-        int w0 = 4;
-
+        // Instance from the command line, e.g. --L=42 --W=39 --H=300 --l=9 --w=4 --h=10 --N=3,
+        // plus --timeout=MS to bound the solve, --mergeThreshold=N and --wireframe=true
+        Map<String, String> params = getParameters().getNamed();
+        int L0 = param(params, "L", 42);
+        int W0 = param(params, "W", 39);
+        int H0 = param(params, "H", 300);
+        int N0 = param(params, "N", 3);
+        int l0 = param(params, "l", 9);
+        int w0 = param(params, "w", 4);
+        int h0 = param(params, "h", 10);
+        int timeout = param(params, "timeout", 0);
+        int mergeThreshold = param(params, "mergeThreshold", MERGE_THRESHOLD);
+        boolean wireframe = Boolean.parseBoolean(params.getOrDefault("wireframe", "false"));
 
         // Container size
-        double containerWidth = L0, containerHeight = 300, containerDepth = W0;
+        double containerWidth = L0, containerHeight = H0, containerDepth = W0;
 
         // Shift world so (0,0,0) = container's bottom-left-front corner
         world.setTranslateX(-containerWidth / 2);
@@ -91,37 +122,44 @@ public class Box3DViewer extends Application {
         container.setDrawMode(DrawMode.LINE);
         world.getChildren().add(container);
 
-
-
-        RecursiveBDModule solver = new RecursiveBDModule();
-        RecursiveBDModule.Result result = solver.palletLoading(L0, W0, n, N0, l0, w0);
-
-        List<BoxSpec> boxes = new ArrayList<>();
-        for (RecursiveBDModule.Tuple4<Integer, Integer, Integer, Integer> block : result.getBlocks()) {
-            System.out.println("(" + block.getFirst() + ", " + block.getSecond() + ", " +
-                    block.getThird() + ", " + block.getFourth() + ")");
-            boxes.add(new BoxSpec(block.getThird(), 10, block.getFourth(), block.getFirst(), 0, block.getSecond()));
-        }
-
-
-        Map<BoxSpec, PhongMaterial> materialMap = new HashMap<>();
-        Random rand = new Random();
-
-        for (BoxSpec b : boxes) {
-            Box box = new Box(b.width, b.height, b.depth);
-            // JavaFX centers boxes — offset by half the dimension
-            box.setTranslateX(b.x + b.width / 2);
-            box.setTranslateY(-b.y - b.height / 2);
-            box.setTranslateZ(b.z + b.depth / 2);
-
-            materialMap.computeIfAbsent(
-                    new BoxSpec(b.width, b.height, b.depth, 0, 0, 0),
-                    k -> new PhongMaterial(Color.color(rand.nextDouble(), rand.nextDouble(), rand.nextDouble()))
-            );
-
-            box.setMaterial(materialMap.get(new BoxSpec(b.width, b.height, b.depth, 0, 0, 0)));
-            world.getChildren().add(box);
-        }
+        Group boxGroup = new Group();
+        world.getChildren().add(boxGroup);
+        Map<BoxSpec, PhongMaterial> materials = new HashMap<>();
+        String title = "3D Box Viewer - " + L0 + "x" + W0 + "x" + H0 + ", cartons " + l0 + "x" + w0 + "x" + h0;
+
+        // Stack 2D layers of the cartons up to the container height on a background thread;
+        // improved loads are shown as they are found, at most one scene update per pulse
+        control = timeout > 0 ? new SolveControl(timeout, TimeUnit.MILLISECONDS) : new SolveControl();
+        Consumer<LayerLoading.Result> show = load -> {
+            boxGroup.getChildren().setAll(render_boxes(boxes_of(load), materials,
+                    load.getCount() >= mergeThreshold, wireframe));
+            stage.setTitle(title + ": " + load.getCount() + " cartons (solving, Esc to stop)");
+        };
+        CompletableFuture.supplyAsync(() -> new LayerLoading().load(L0, W0, H0, N0, l0, w0, h0,
+                        null, 0, 0, control, load -> {
+                            if (pending.getAndSet(load) == null) Platform.runLater(() -> {
+                                LayerLoading.Result latest = pending.getAndSet(null);
+                                if (latest != null) show.accept(latest);
+                            });
+                        }), solver)
+                .whenComplete((result, error) -> Platform.runLater(() -> {
+                    pending.set(null);  // the final load supersedes any incumbent not shown yet
+                    if (error != null) {
+                        stage.setTitle(title + ": solve failed, " + error.getCause());
+                        return;
+                    }
+                    show.accept(result);
+                    stage.setTitle(title + ": " + result.getCount() + " cartons"
+                            + (result.isStopped() ? " (stopped)" : ""));
+                    for (LayerLoading.Layer layer : result.getLayers()) {
+                        System.out.println("layer at z=" + layer.getZ() + ": " + layer.getCount() + " cartons, " +
+                                layer.getHeight() + " high");
+                    }
+                }));
+
+        scene.setOnKeyPressed((KeyEvent event) -> {
+            if (event.getCode() == KeyCode.ESCAPE) control.cancel();
+        });
 
         // Add rotation controls
         Rotate rotateX = new Rotate(0, Rotate.X_AXIS);
@@ -151,13 +189,160 @@ public class Box3DViewer extends Application {
             zoom.setZ(zoom.getZ() + delta);
         });
 
-        stage.setTitle("3D Box Viewer");
+        stage.setTitle(title + " (solving, Esc to stop)");
         stage.setScene(scene);
         stage.show();
     }
 
+    @Override
+    public void stop() {
+        control.cancel();
+        solver.shutdownNow();
+    }
+
+    private static int param(Map<String, String> params, String name, int fallback) {
+        String value = params.get(name);
+        return value == null ? fallback : Integer.parseInt(value);
+    }
+
+    /**
+     * Loaded cartons as boxes, with the load's height as the scene's y axis
+     */
+    static List<BoxSpec> boxes_of(LayerLoading.Result load) {
+        List<BoxSpec> boxes = new ArrayList<>(load.getCount());
+        load.forEach((x, y, z, l, w, h) -> boxes.add(new BoxSpec(l, h, w, x, z, y)));
+        return boxes;
+    }
+
+    /**
+     * Scene nodes for the boxes: one Box node each, or one mesh per material when merged,
+     * plus one mesh with the outline of every box when wireframe edges are wanted.
+     * Materials are kept in materialMap, so a box size keeps its color across updates.
+     */
+    static Group render_boxes(List<BoxSpec> boxes, Map<BoxSpec, PhongMaterial> materialMap,
+                              boolean merged, boolean wireframe) {
+        Group group = new Group();
+        Map<BoxSpec, List<BoxSpec>> byMaterial = new LinkedHashMap<>();
+        Random rand = new Random();
+
+        for (BoxSpec b : boxes) {
+            PhongMaterial material = materialMap.computeIfAbsent(
+                    new BoxSpec(b.width, b.height, b.depth, 0, 0, 0),
+                    k -> new PhongMaterial(Color.color(rand.nextDouble(), rand.nextDouble(), rand.nextDouble()))
+            );
+            if (merged) {
+                byMaterial.computeIfAbsent(new BoxSpec(b.width, b.height, b.depth, 0, 0, 0),
+                        k -> new ArrayList<>()).add(b);
+                continue;
+            }
+
+            Box box = new Box(b.width, b.height, b.depth);
+            // JavaFX centers boxes — offset by half the dimension
+            box.setTranslateX(b.x + b.width / 2);
+            box.setTranslateY(-b.y - b.height / 2);
+            box.setTranslateZ(b.z + b.depth / 2);
+            box.setMaterial(material);
+            group.getChildren().add(box);
+        }
+
+        for (Map.Entry<BoxSpec, List<BoxSpec>> entry : byMaterial.entrySet()) {
+            MeshView view = new MeshView(box_mesh(entry.getValue()));
+            view.setMaterial(materialMap.get(entry.getKey()));
+            view.setCullFace(CullFace.NONE);
+            group.getChildren().add(view);
+        }
+
+        if (wireframe && !boxes.isEmpty()) {
+            MeshView edges = new MeshView(edge_mesh(boxes));
+            edges.setDrawMode(DrawMode.LINE);
+            edges.setCullFace(CullFace.NONE);
+            edges.setMaterial(new PhongMaterial(Color.BLACK));
+            group.getChildren().add(edges);
+        }
+        return group;
+    }
+
+    /**
+     * Corners of a box in scene coordinates (y points down), bit 0 = x, bit 1 = y, bit 2 = z
+     */
+    private static void put_corners(float[] points, int p, BoxSpec b) {
+        for (int corner = 0; corner < 8; corner++) {
+            points[p++] = (float) (b.x + ((corner & 1) != 0 ? b.width : 0));
+            points[p++] = (float) -(b.y + ((corner & 2) != 0 ? b.height : 0));
+            points[p++] = (float) (b.z + ((corner & 4) != 0 ? b.depth : 0));
+        }
+    }
+
+    // Two triangles per side, as corner numbers
+    private static final int[] BOX_TRIANGLES = {
+            0, 2, 1, 1, 2, 3,  // back   (z = 0)
+            4, 5, 6, 5, 7, 6,  // front  (z = depth)
+            0, 4, 2, 2, 4, 6,  // left   (x = 0)
+            1, 3, 5, 3, 7, 5,  // right  (x = width)
+            0, 1, 4, 1, 5, 4,  // bottom (y = 0)
+            2, 6, 3, 3, 6, 7   // top    (y = height)
+    };
+
+    // The twelve edges of a box, as corner pairs
+    private static final int[] BOX_EDGES = {
+            0, 1, 2, 3, 4, 5, 6, 7,
+            0, 2, 1, 3, 4, 6, 5, 7,
+            0, 4, 1, 5, 2, 6, 3, 7
+    };
+
+    /**
+     * One triangle mesh holding every given box
+     */
+    static TriangleMesh box_mesh(List<BoxSpec> boxes) {
+        float[] points = new float[boxes.size() * 8 * 3];
+        int[] faces = new int[boxes.size() * 12 * 6];
+        int p = 0, f = 0;
+        for (int i = 0; i < boxes.size(); i++) {
+            put_corners(points, p, boxes.get(i));
+            p += 24;
+            for (int corner : BOX_TRIANGLES) {
+                faces[f++] = i * 8 + corner;
+                faces[f++] = 0;  // single texture coordinate
+            }
+        }
+        TriangleMesh mesh = new TriangleMesh();
+        mesh.getPoints().setAll(points);
+        mesh.getTexCoords().setAll(0, 0);
+        mesh.getFaces().setAll(faces);
+        // No smoothing groups, so every side gets flat shading
+        mesh.getFaceSmoothingGroups().setAll(new int[boxes.size() * 12]);
+        return mesh;
+    }
+
+    /**
+     * Outlines of every given box as degenerate triangles (a, b, b), which draw as a
+     * single a-b line in {@link DrawMode#LINE}, so no face diagonals show up
+     */
+    static TriangleMesh edge_mesh(List<BoxSpec> boxes) {
+        float[] points = new float[boxes.size() * 8 * 3];
+        int[] faces = new int[boxes.size() * 12 * 6];
+        int p = 0, f = 0;
+        for (int i = 0; i < boxes.size(); i++) {
+            put_corners(points, p, boxes.get(i));
+            p += 24;
+            for (int e = 0; e < BOX_EDGES.length; e += 2) {
+                faces[f++] = i * 8 + BOX_EDGES[e];
+                faces[f++] = 0;
+                faces[f++] = i * 8 + BOX_EDGES[e + 1];
+                faces[f++] = 0;
+                faces[f++] = i * 8 + BOX_EDGES[e + 1];
+                faces[f++] = 0;
+            }
+        }
+        TriangleMesh mesh = new TriangleMesh();
+        mesh.getPoints().setAll(points);
+        mesh.getTexCoords().setAll(0, 0);
+        mesh.getFaces().setAll(faces);
+        return mesh;
+    }
+
     public static void main(String[] args) {
-        launch();
+        launch(args);
     }
 }
 // mvn clean javafx:run -X
\ No newline at end of file
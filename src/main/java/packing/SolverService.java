@@ -0,0 +1,403 @@
+package packing;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import packing.algorithm.BlockList;
+import packing.algorithm.PalletInstance;
+import packing.algorithm.RasterRegistry;
+import packing.algorithm.RecursiveBDModule;
+import packing.algorithm.SolutionStore;
+import packing.algorithm.SolveControl;
+import packing.algorithm.SolveStats;
+import packing.algorithm.SubproblemCache;
+import packing.algorithm.XYGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resident solver behind a small HTTP/JSON endpoint on localhost.
+ * <p>
+ * A long-running process keeps the JIT, the shared raster tables and a cache of solved
+ * canonical instances warm, so repeated and similar requests skip the cold start of a
+ * fresh JVM. Subproblem results are kept too, in one cache per canonical carton for the
+ * {@code cartons} most recently used cartons: they hold for every pallet of that carton,
+ * so a new pallet size reuses the blocks solved for earlier ones. Each request runs on a
+ * virtual thread where the JDK has them, and at most {@code limit} solves run at once;
+ * the rest wait for a solver up to their deadline.
+ * Instances whose canonical pallet is longer than {@code maxSide} or has more than
+ * {@code maxPoints} raster points along a side are refused with a 400 before any search.
+ * <pre>
+ * POST /solve   {"L": 1200, "W": 1000, "l": 250, "w": 150, "N": 3, "timeoutMs": 500, "blocks": true}
+ * GET  /solve?L=1200&amp;W=1000&amp;l=250&amp;w=150
+ * GET  /stats   request, cache and search counters
+ * GET  /health
+ * </pre>
+ */
+public class SolverService {
+    private static final int MAX_BODY = 64 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final BlockingQueue<RecursiveBDModule> solvers;  // one per allowed concurrent solve
+    private final int limit;
+    private final long default_timeout_ms;
+    private final int default_depth;
+    private final int max_side;
+    private final int max_points;
+    private final Map<PalletInstance, RecursiveBDModule.Result> results;  // LRU of canonical solves
+    private final Map<Long, SubproblemCache> caches;  // LRU of subproblem caches by canonical carton
+    private final long started = System.nanoTime();
+
+    // Counters for /stats
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder solves = new LongAdder();
+    private final LongAdder result_hits = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder stopped = new LongAdder();
+    private final LongAdder solve_nanos = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder dominated = new LongAdder();
+    private final LongAdder evaluated = new LongAdder();
+    private final LongAdder eval_pruned = new LongAdder();
+    private final LongAdder early_exits = new LongAdder();
+    private final LongAdder cache_hits = new LongAdder();
+    private final LongAdder cache_misses = new LongAdder();
+
+    // Constructor
+    public SolverService(InetSocketAddress address, int limit, long timeoutMs, int depth,
+                         int cacheSize, int cartons, int maxSide, int maxPoints,
+                         SolutionStore store) throws IOException {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be positive: " + limit);
+        if (cartons <= 0) throw new IllegalArgumentException("cartons must be positive: " + cartons);
+        this.limit = limit;
+        this.default_timeout_ms = timeoutMs;
+        this.default_depth = depth;
+        this.max_side = maxSide;
+        this.max_points = maxPoints;
+        this.solvers = new ArrayBlockingQueue<>(limit);
+        for (int i = 0; i < limit; i++) {
+            RecursiveBDModule solver = new RecursiveBDModule(null);
+            solver.setCollectStats(true);
+            solver.setSolutionStore(store);
+            solvers.add(solver);
+        }
+        this.results = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PalletInstance, RecursiveBDModule.Result> eldest) {
+                return size() > cacheSize;
+            }
+        });
+        this.caches = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, SubproblemCache> eldest) {
+                return size() > cartons;
+            }
+        });
+
+        this.executor = request_executor();
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/solve", exchange -> handle(exchange, this::solve));
+        server.createContext("/stats", exchange -> handle(exchange, this::stats));
+        server.createContext("/health", exchange -> handle(exchange, e -> reply(e, 200, "{\"status\":\"ok\"}")));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stop accepting requests, give running ones up to {@code delay} seconds, then shut down
+     */
+    public void stop(int delay) {
+        server.stop(delay);
+        executor.shutdownNow();
+    }
+
+    public InetSocketAddress getAddress() { return server.getAddress(); }
+
+    /**
+     * One virtual thread per request where the JDK has them (21+), pooled platform threads before
+     */
+    static ExecutorService request_executor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "service-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException, InterruptedException;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) {
+        requests.increment();
+        try (exchange) {
+            try {
+                handler.handle(exchange);
+            } catch (IllegalArgumentException e) {
+                reply(exchange, 400, error(e.getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                reply(exchange, 503, error("shutting down"));
+            } catch (RuntimeException e) {
+                failures.increment();
+                reply(exchange, 500, error(String.valueOf(e)));
+            }
+        } catch (IOException e) {
+            failures.increment();  // client went away
+        }
+    }
+
+    private void solve(HttpExchange exchange) throws IOException, InterruptedException {
+        Map<String, String> fields;
+        switch (exchange.getRequestMethod()) {
+            case "POST" -> fields = BatchRunner.parse_object(read_body(exchange.getRequestBody()));
+            case "GET" -> fields = parse_query(exchange.getRequestURI().getRawQuery());
+            default -> {
+                reply(exchange, 405, error("use GET or POST"));
+                return;
+            }
+        }
+        PalletInstance instance = new PalletInstance(
+                integer(fields, "L", -1), integer(fields, "W", -1),
+                integer(fields, "N", default_depth),
+                integer(fields, "l", -1), integer(fields, "w", -1));
+        long timeout_ms = integer(fields, "timeoutMs", (int) Math.min(Integer.MAX_VALUE, default_timeout_ms));
+        boolean with_blocks = Boolean.parseBoolean(fields.getOrDefault("blocks", "false"));
+
+        long start = System.nanoTime();
+        PalletInstance key = instance.canonical();
+        check_size(key);
+        RecursiveBDModule.Result canonical = results.get(key);
+        boolean hit = canonical != null;
+        if (hit) {
+            result_hits.increment();
+        } else {
+            // Wait for a free solver, but no longer than the request's deadline
+            RecursiveBDModule solver = timeout_ms > 0
+                    ? solvers.poll(timeout_ms, TimeUnit.MILLISECONDS) : solvers.take();
+            if (solver == null) {
+                rejected.increment();
+                reply(exchange, 503, error("all " + limit + " solvers busy"));
+                return;
+            }
+            try {
+                long left = timeout_ms - (System.nanoTime() - start) / 1_000_000;
+                SolveControl control = timeout_ms <= 0 ? new SolveControl()
+                        : new SolveControl(Math.max(1, left), TimeUnit.MILLISECONDS);
+                canonical = solver.palletLoading(key.getL0(), key.getW0(), 0, key.getN0(),
+                        key.getBoxL(), key.getBoxW(), 0, 0, cache(key), control, null);
+            } finally {
+                solvers.add(solver);
+            }
+            record(canonical, System.nanoTime() - start);
+            if (!canonical.isStopped()) results.put(key, canonical);
+        }
+        RecursiveBDModule.Result result = instance.from_canonical(canonical);
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"L\":").append(instance.getL0()).append(",\"W\":").append(instance.getW0())
+                .append(",\"l\":").append(instance.getBoxL()).append(",\"w\":").append(instance.getBoxW())
+                .append(",\"N\":").append(instance.getN0()).append(",\"count\":").append(result.getCount())
+                .append(",\"optimal\":").append(result.isProvenOptimal())
+                .append(",\"stopped\":").append(result.isStopped())
+                .append(",\"cached\":").append(hit)
+                .append(",\"ms\":").append(String.format(Locale.ROOT, "%.3f", millis));
+        if (with_blocks) {
+            sb.append(",\"blocks\":[");
+            BlockList blocks = result.getBlockList();
+            for (int i = 0; i < blocks.size(); i++) {
+                if (i > 0) sb.append(',');
+                sb.append('[').append(blocks.getX(i)).append(',').append(blocks.getY(i))
+                        .append(',').append(blocks.getL(i)).append(',').append(blocks.getW(i)).append(']');
+            }
+            sb.append(']');
+        }
+        reply(exchange, 200, sb.append('}').toString());
+    }
+
+    /**
+     * Refuse a canonical instance too large to solve in bounded time and memory
+     */
+    private void check_size(PalletInstance key) {
+        if (key.getL0() > max_side || key.getW0() > max_side) {
+            throw new IllegalArgumentException("pallet too large: " + key.getL0() + "x" + key.getW0()
+                    + " in box units, at most " + max_side + " per side");
+        }
+        // The raster table is shared and linear in the side, so reading its counts is cheap
+        XYGenerator xy_gen = RasterRegistry.shared().generator(
+                key.getL0(), key.getW0(), key.getBoxL(), key.getBoxW());
+        int points = Math.max(xy_gen.get_X_size(), xy_gen.get_Y_size());
+        if (points > max_points) {
+            throw new IllegalArgumentException("too many raster points: " + points
+                    + " along a side, at most " + max_points);
+        }
+    }
+
+    /**
+     * Warm subproblem cache of a canonical instance's carton; solves of the same carton
+     * share it, as its entries are exact for any pallet
+     */
+    private SubproblemCache cache(PalletInstance key) {
+        long carton = ((long) key.getBoxL() << 32) | key.getBoxW();
+        return caches.computeIfAbsent(carton, c -> new SubproblemCache());
+    }
+
+    /**
+     * Add the counters of a finished solve to the service totals
+     */
+    private void record(RecursiveBDModule.Result result, long nanos) {
+        solves.increment();
+        solve_nanos.add(nanos);
+        if (result.isStopped()) stopped.increment();
+        SolveStats stats = result.getStats();
+        if (stats == null) return;  // answered from the solution store
+        nodes.add(stats.getNodes());
+        dominated.add(stats.getDominated());
+        evaluated.add(stats.getEvaluated());
+        eval_pruned.add(stats.getEvalPruned());
+        early_exits.add(stats.getEarlyExits());
+        cache_hits.add(stats.getCacheHits());
+        cache_misses.add(stats.getCacheMisses());
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        long solved = solves.sum();
+        String body = "{\"uptimeMs\":" + (System.nanoTime() - started) / 1_000_000
+                + ",\"limit\":" + limit
+                + ",\"inFlight\":" + (limit - solvers.size())
+                + ",\"requests\":" + requests.sum()
+                + ",\"solves\":" + solved
+                + ",\"resultHits\":" + result_hits.sum()
+                + ",\"resultEntries\":" + results.size()
+                + ",\"cartonCaches\":" + caches.size()
+                + ",\"rejected\":" + rejected.sum()
+                + ",\"failures\":" + failures.sum()
+                + ",\"stopped\":" + stopped.sum()
+                + ",\"meanSolveMs\":" + String.format(Locale.ROOT, "%.3f",
+                        solved == 0 ? 0.0 : solve_nanos.sum() / 1e6 / solved)
+                + ",\"rasterTables\":" + RasterRegistry.shared().size()
+                + ",\"search\":{\"nodes\":" + nodes.sum()
+                + ",\"dominated\":" + dominated.sum()
+                + ",\"evaluated\":" + evaluated.sum()
+                + ",\"evalPruned\":" + eval_pruned.sum()
+                + ",\"earlyExits\":" + early_exits.sum()
+                + ",\"cacheHits\":" + cache_hits.sum()
+                + ",\"cacheMisses\":" + cache_misses.sum() + "}}";
+        reply(exchange, 200, body);
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + BatchRunner.quote(message == null ? "error" : message) + "}";
+    }
+
+    private static String read_body(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_BODY + 1);
+        if (body.length > MAX_BODY) throw new IllegalArgumentException("request body too large");
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> parse_query(String query) {
+        Map<String, String> fields = new HashMap<>();
+        if (query == null || query.isEmpty()) return fields;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            fields.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return fields;
+    }
+
+    private static int integer(Map<String, String> fields, String name, int fallback) {
+        String text = fields.get(name);
+        if (text == null) {
+            if (fallback < 0) throw new IllegalArgumentException("missing field " + name);
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not an integer: " + name + "=" + text);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        int limit = Runtime.getRuntime().availableProcessors();
+        long timeout_ms = 0;
+        int depth = 3;
+        int cache_size = 10_000;
+        int cartons = 16;
+        int max_side = 20_000;
+        int max_points = 2_000;
+        Path store_path = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--limit" -> limit = Integer.parseInt(args[++i]);
+                case "--timeout" -> timeout_ms = Long.parseLong(args[++i]);
+                case "--depth" -> depth = Integer.parseInt(args[++i]);
+                case "--cache" -> cache_size = Integer.parseInt(args[++i]);
+                case "--cartons" -> cartons = Integer.parseInt(args[++i]);
+                case "--max-side" -> max_side = Integer.parseInt(args[++i]);
+                case "--max-points" -> max_points = Integer.parseInt(args[++i]);
+                case "--store" -> store_path = Path.of(args[++i]);
+                default -> {
+                    System.err.println("unknown option " + args[i]);
+                    System.err.println("usage: java packing.SolverService [--port P] [--limit K] [--timeout MS]"
+                            + " [--depth N] [--cache ENTRIES] [--cartons K] [--max-side S] [--max-points P]"
+                            + " [--store FILE]");
+                    System.exit(2);
+                }
+            }
+        }
+
+        SolutionStore store = store_path == null ? null : new SolutionStore(store_path);
+        SolverService service = new SolverService(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                limit, timeout_ms, depth, cache_size, cartons, max_side, max_points, store);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            service.stop(1);
+            try {
+                if (store != null) store.close();
+            } catch (IOException ignored) {
+                // the store's records are already on disk
+            }
+        }));
+        service.start();
+        System.err.println("solver service listening on http://" + service.getAddress().getHostString()
+                + ":" + service.getAddress().getPort());
+    }
+}
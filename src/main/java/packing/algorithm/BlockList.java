@@ -0,0 +1,129 @@
+package packing.algorithm;
+
+import java.util.*;
+
+/**
+ * Growable list of (x, y, L, W) blocks packed into a single int array.
+ * <p>
+ * Used by the search in place of boxed {@code Tuple4} lists; the boxed form is only
+ * built at the public API edge through {@link #toTuples()}.
+ */
+public class BlockList {
+    private static final int STRIDE = 4;
+
+    private int[] data;
+    private int size;
+
+    // Constructor
+    public BlockList(int capacity) {
+        this.data = new int[Math.max(1, capacity) * STRIDE];
+        this.size = 0;
+    }
+
+    public BlockList() {
+        this(8);
+    }
+
+    /**
+     * Build a list holding a single block
+     */
+    public static BlockList of(int x, int y, int L, int W) {
+        BlockList list = new BlockList(1);
+        list.add(x, y, L, W);
+        return list;
+    }
+
+    /**
+     * Build a list from boxed blocks
+     */
+    public static BlockList of(List<RecursiveBDModule.Tuple4<Integer, Integer, Integer, Integer>> blocks) {
+        BlockList list = new BlockList(blocks.size());
+        for (RecursiveBDModule.Tuple4<Integer, Integer, Integer, Integer> block : blocks) {
+            list.add(block.getFirst(), block.getSecond(), block.getThird(), block.getFourth());
+        }
+        return list;
+    }
+
+    private void ensure_capacity(int blocks) {
+        if (blocks * STRIDE > data.length) {
+            data = Arrays.copyOf(data, Math.max(blocks * STRIDE, data.length * 2));
+        }
+    }
+
+    public void add(int x, int y, int L, int W) {
+        ensure_capacity(size + 1);
+        int p = size * STRIDE;
+        data[p] = x;
+        data[p + 1] = y;
+        data[p + 2] = L;
+        data[p + 3] = W;
+        size++;
+    }
+
+    /**
+     * Append {@code count} blocks from a packed (x, y, L, W) array, shifted by the offsets
+     */
+    public void addAll(int[] packed, int count, int x_offset, int y_offset) {
+        ensure_capacity(size + count);
+        int p = size * STRIDE;
+        for (int q = 0; q < count * STRIDE; q += STRIDE) {
+            data[p++] = packed[q] + x_offset;
+            data[p++] = packed[q + 1] + y_offset;
+            data[p++] = packed[q + 2];
+            data[p++] = packed[q + 3];
+        }
+        size += count;
+    }
+
+    /**
+     * Append every block of another list, shifted by the offsets
+     */
+    public void addAll(BlockList other, int x_offset, int y_offset) {
+        addAll(other.data, other.size, x_offset, y_offset);
+    }
+
+    /**
+     * Append every block of another list mirrored along the diagonal, then shifted by the offsets
+     */
+    public void addAllTransposed(BlockList other, int x_offset, int y_offset) {
+        ensure_capacity(size + other.size);
+        int p = size * STRIDE;
+        for (int q = 0; q < other.size * STRIDE; q += STRIDE) {
+            data[p++] = other.data[q + 1] + x_offset;
+            data[p++] = other.data[q] + y_offset;
+            data[p++] = other.data[q + 3];
+            data[p++] = other.data[q + 2];
+        }
+        size += other.size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() { return size; }
+    public int getX(int i) { return data[i * STRIDE]; }
+    public int getY(int i) { return data[i * STRIDE + 1]; }
+    public int getL(int i) { return data[i * STRIDE + 2]; }
+    public int getW(int i) { return data[i * STRIDE + 3]; }
+
+    /**
+     * Copy into a list trimmed to its size
+     */
+    public BlockList copy() {
+        BlockList list = new BlockList(size);
+        list.addAll(this, 0, 0);
+        return list;
+    }
+
+    /**
+     * Box the blocks for callers of the public API
+     */
+    public List<RecursiveBDModule.Tuple4<Integer, Integer, Integer, Integer>> toTuples() {
+        List<RecursiveBDModule.Tuple4<Integer, Integer, Integer, Integer>> tuples = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tuples.add(new RecursiveBDModule.Tuple4<>(getX(i), getY(i), getL(i), getW(i)));
+        }
+        return tuples;
+    }
+}
@@ -0,0 +1,66 @@
+package packing.algorithm;
+
+/**
+ * Bounds of a whole row of five-block cuts at once: x1, x2 and y1 fixed, y2 running over
+ * a range of raster points.
+ * <p>
+ * Within a row, two sub-block bounds are constant and the other three are reads from
+ * three rows of the {@link BoundTable}, at columns that depend only on y2. The kernel
+ * gathers the three into a structure-of-arrays scratch row, then caps the sums and
+ * compacts the survivors without branching, so the cuts that were enumerated one
+ * {@code cut_bound} at a time become a few tight loops over int arrays.
+ */
+final class BoundKernel {
+    private int[] rest_columns = new int[16];  // per y2 index: column of W0 - y2
+    private int[] sums = new int[16];
+    private int ny;
+
+    /**
+     * y2 raster indices and bounds of the cuts kept by the last {@link #row}, in order
+     */
+    int[] survivors = new int[16];
+    int[] survivor_bounds = new int[16];
+
+    /**
+     * Prepare for the cuts of a node of width W0 with ny y positions
+     */
+    void start(BoundTable bounds, int W0, int[] Y, int ny) {
+        if (rest_columns.length < ny) {
+            int capacity = Math.max(ny, 2 * rest_columns.length);
+            rest_columns = new int[capacity];
+            sums = new int[capacity];
+            survivors = new int[capacity];
+            survivor_bounds = new int[capacity];
+        }
+        for (int d = 0; d < ny; d++) rest_columns[d] = bounds.column(W0 - Y[d]);
+        this.ny = ny;
+    }
+
+    /**
+     * Bounds of the cuts (x1, x2, y1, Y[d]) of an L0 x W0 node for d in [from, to),
+     * capped at zub; keeps those in (low, high] and returns how many
+     */
+    int row(BoundTable bounds, int L0, int W0, int x1, int x2, int y1, int[] Y,
+            int from, int to, int low, int high, int zub) {
+        if (to > ny) throw new IllegalArgumentException("row past the node: " + to + " > " + ny);
+        int[] right = bounds.row(L0 - x1);   // block 2: (L0 - x1) x (W0 - y2)
+        int[] middle = bounds.row(x2 - x1);  // block 3: (x2 - x1) x (y2 - y1)
+        int[] top = bounds.row(L0 - x2);     // block 5: (L0 - x2) x y2
+        int base = bounds.get(x1, W0 - y1) + bounds.get(x2, y1) - 3;  // the entries hold bound + 1
+
+        // Gather: the y2 columns are the rest column, the raster index of y2 - y1 and d itself
+        for (int d = from; d < to; d++) {
+            sums[d] = right[rest_columns[d]] + middle[bounds.column(Y[d] - y1)] + top[d];
+        }
+
+        // Cap and compact; every slot is written and only kept ones advance
+        int kept = 0;
+        for (int d = from; d < to; d++) {
+            int bound = Math.min(zub, base + sums[d]);
+            survivors[kept] = d;
+            survivor_bounds[kept] = bound;
+            kept += bound > low & bound <= high ? 1 : 0;
+        }
+        return kept;
+    }
+}
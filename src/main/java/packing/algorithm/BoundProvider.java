@@ -0,0 +1,75 @@
+package packing.algorithm;
+
+/**
+ * Upper bound on the number of l x w boxes that fit into an L x W rectangle.
+ * <p>
+ * The solver uses the bound for its {@code zlb == zub} early exit and for pruning the
+ * z_i of each sub-block, so every implementation must be a valid upper bound on the
+ * optimum. Within one solve the solver caches the bound per reduced (L, W).
+ */
+@FunctionalInterface
+public interface BoundProvider {
+
+    int upper_bound(int L, int W, int l, int w);
+
+    /**
+     * Area of the rectangle divided by the box area
+     */
+    BoundProvider AREA = RecursiveBDModule::compute_zub;
+
+    /**
+     * Area bound after reducing both sides to their largest combination of box sides
+     */
+    BoundProvider RASTER = RecursiveBDModule::upper_bound;
+
+    /**
+     * Barnes' bound on the raster-reduced rectangle
+     */
+    BoundProvider BARNES = (L, W, l, w) -> barnes(
+            PalletInstance.largest_combination(L, l, w),
+            PalletInstance.largest_combination(W, l, w), l, w);
+
+    /**
+     * Tightest of the raster and Barnes bounds
+     */
+    BoundProvider DEFAULT = min(RASTER, BARNES);
+
+    /**
+     * Provider returning the smallest bound of the given providers
+     */
+    static BoundProvider min(BoundProvider... providers) {
+        return (L, W, l, w) -> {
+            int bound = Integer.MAX_VALUE;
+            for (BoundProvider provider : providers) {
+                bound = Math.min(bound, provider.upper_bound(L, W, l, w));
+            }
+            return bound;
+        };
+    }
+
+    /**
+     * Barnes' bound.
+     * <p>
+     * Every l x w box splits into w bars of size 1 x l and into l bars of size 1 x w, so a
+     * packing of n boxes gives packings of n * w bars of length l and n * l bars of length
+     * w. Both are limited by {@link #max_bars}.
+     */
+    static int barnes(int L, int W, int l, int w) {
+        if (L <= 0 || W <= 0) return 0;
+        int bars_l = max_bars(L, W, l);
+        int bars_w = max_bars(L, W, w);
+        return Math.min((L * W) / (l * w), Math.min(bars_l / w, bars_w / l));
+    }
+
+    /**
+     * Upper bound on the number of 1 x k bars in an L x W rectangle.
+     * <p>
+     * Colour cell (i, j) with (i + j) mod k. Every bar covers each colour exactly once, so
+     * no packing has more bars than the rarest colour has cells, which leaves at least
+     * min(a * b, (k - a) * (k - b)) cells uncovered for a = L mod k and b = W mod k.
+     */
+    static int max_bars(int L, int W, int k) {
+        int a = L % k, b = W % k;
+        return (L * W - Math.min(a * b, (k - a) * (k - b))) / k;
+    }
+}
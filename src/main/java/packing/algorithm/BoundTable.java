@@ -0,0 +1,101 @@
+package packing.algorithm;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Per-solve cache of a {@link BoundProvider}, indexed by the raster-reduced (L, W).
+ * <p>
+ * Reducing both sides to their largest raster point does not change which packings
+ * exist, so all rectangles that reduce to the same raster point pair share one entry.
+ * Rows are allocated when first touched, so setting up a table costs one slot per raster
+ * point however large the pallet, and the rest of the work happens inside the search,
+ * where the solve control is polled. Concurrent workers may race to fill an entry; they
+ * compute the same value.
+ */
+class BoundTable {
+    private final int[] X;
+    private final int[] Y;
+    private final int ny;
+    private final XYGenerator xy_gen;
+    private final BoundProvider provider;
+    private final int l, w;
+    private final AtomicReferenceArray<int[]> rows;  // per row: bound + 1, or 0 while not computed yet
+    private final AtomicIntegerArray complete;  // 1 for rows with every entry computed
+
+    BoundTable(XYGenerator xy_gen, BoundProvider provider, int l, int w) {
+        this.X = xy_gen.get_X();
+        this.Y = xy_gen.get_Y();
+        this.ny = xy_gen.get_Y_size();
+        this.xy_gen = xy_gen;
+        this.provider = provider;
+        this.l = l;
+        this.w = w;
+        this.rows = new AtomicReferenceArray<>(xy_gen.get_X_size());
+        this.complete = new AtomicIntegerArray(xy_gen.get_X_size());
+    }
+
+    /**
+     * Upper bound for an L x W rectangle no larger than the pallet
+     */
+    int get(int L, int W) {
+        int ix = xy_gen.get_X_index(L) - 1;
+        int iy = xy_gen.get_Y_index(W) - 1;
+        int[] row = entries(ix);
+
+        int bound = row[iy] - 1;
+        if (bound < 0) {
+            bound = provider.upper_bound(X[ix], Y[iy], l, w);
+            row[iy] = bound + 1;
+        }
+        return bound;
+    }
+
+    /**
+     * Row ix of the table, allocated on first use; every thread gets the same array
+     */
+    private int[] entries(int ix) {
+        int[] row = rows.getPlain(ix);
+        if (row == null) {
+            // Racing allocations keep the first, whose zero entries are visible to everyone
+            rows.compareAndSet(ix, null, new int[ny]);
+            row = rows.get(ix);
+        }
+        return row;
+    }
+
+    /**
+     * Row for rectangles of length L, indexed by {@link #column(int)}, with every entry
+     * computed and each holding the bound plus one
+     */
+    int[] row(int L) {
+        int ix = xy_gen.get_X_index(L) - 1;
+        if (complete.get(ix) == 0) {
+            for (int iy = 0; iy < ny; iy++) get(X[ix], Y[iy]);
+            complete.set(ix, 1);  // publishes the row to threads that see the flag
+        }
+        return rows.getPlain(ix);
+    }
+
+    /**
+     * Column of rectangles of width W within a row
+     */
+    int column(int W) {
+        return xy_gen.get_Y_index(W) - 1;
+    }
+
+    /**
+     * Number of entries computed so far
+     */
+    int computed() {
+        int computed = 0;
+        for (int ix = 0; ix < rows.length(); ix++) {
+            int[] row = rows.get(ix);
+            if (row == null) continue;
+            for (int bound : row) {
+                if (bound != 0) computed++;
+            }
+        }
+        return computed;
+    }
+}
@@ -0,0 +1,326 @@
+package packing.algorithm;
+
+import java.util.*;
+
+/**
+ * Five-block cuts of one node, in raster order first and then by descending bound.
+ * <p>
+ * The bound of a cut is the sum of the upper bounds of its five sub-blocks, capped at
+ * the node's own upper bound. Cuts whose bound cannot beat the incumbent are dropped
+ * before any block lists are built. Bounds are computed a row of y2 positions at a time
+ * by a {@link BoundKernel}, over only the non-symmetrical cuts of the row.
+ * <p>
+ * Most nodes reach their upper bound after a few cuts, and for those ordering costs more
+ * than it saves, so the first {@link #PROBE} cuts are generated lazily in raster order,
+ * {@link #BATCH} at a time. Nodes that outlast the probe expand the rest best-first, so
+ * strong incumbents show up early and prune the tail; nodes whose cuts are scored by
+ * lower bounds alone gain nothing from the order and stay in raster order throughout.
+ * <p>
+ * Storing every cut of a large pallet would take hundreds of megabytes, so the best-first
+ * part is filled one window at a time. A histogram of the bounds picks the highest bound
+ * range holding about a window of cuts. Once the window is expanded, the next, lower range
+ * is only collected if the incumbent has not already pruned it. Every window enumerates
+ * the remaining cuts again, so windows double from {@link #WINDOW} up to
+ * {@link #MAX_WINDOW} to keep the number of passes logarithmic for most nodes.
+ */
+class CutQueue {
+    static final int WINDOW = 1 << 16;
+    static final int MAX_WINDOW = 1 << 20;
+    static final int BATCH = 64;
+    static final long PROBE = 1 << 16;
+
+    private long[] codes = new long[16];       // (x1, x2, y1, y2) raster indices, 16 bits each
+    private int[] cut_bounds = new int[16];
+    private long[] staged_codes = new long[16];
+    private int[] staged_bounds = new int[16];
+    private long[] histogram = new long[16];
+    private final BoundKernel kernel = new BoundKernel();
+    private int size;
+    private boolean sorted;  // whether the window is in descending bound order
+    private long probe;      // cuts left to enumerate in raster order
+    private int row_a, row_b, row_c;  // first row (x1, x2, y1 indices) not enumerated in raster order
+    private int window;   // cuts per best-first window
+    private int ceiling;  // highest bound level not yet fully collected
+    private long after;   // cuts at the ceiling up to this code were already collected
+    private boolean first;
+    long symmetric;       // cuts rejected by isSymmetrical, over every enumeration
+    long candidates;      // non-symmetrical cuts, over every enumeration
+
+    /**
+     * Start a new enumeration, best-first after the raster-order probe or, for nodes whose
+     * cuts are cheap to score, in raster order only
+     */
+    void start(boolean best_first) {
+        probe = best_first ? PROBE : Long.MAX_VALUE;
+        row_a = 0;
+        row_b = 0;
+        row_c = 0;
+        window = WINDOW;
+        ceiling = Integer.MAX_VALUE;
+        after = -1;
+        first = true;
+    }
+
+    /**
+     * Collect the next window: non-symmetrical cuts with a bound above zlb that were not in
+     * an earlier window since {@link #start}. Windows of the probe hold the next cuts in
+     * raster order; later ones are sorted by descending bound and, within a bound, in
+     * raster order, and a bound level larger than the window is split over several.
+     * Enumerating a large node takes long, so the control is polled between rows of cuts
+     * and an empty window is returned once it stops.
+     *
+     * @return the number of cuts in the window, or 0 when no cut is left
+     */
+    int fill(int L0, int W0, int[] X, int nx, int[] Y, int ny,
+             BoundTable bounds, int zlb, int zub, SolveControl control) {
+        if (nx > 0xFFFF || ny > 0xFFFF)
+            throw new IllegalArgumentException("too many raster points: " + nx + " x " + ny);
+
+        size = 0;
+        if (probe > 0) {
+            sorted = false;
+            fill_raster(L0, W0, X, nx, Y, ny, bounds, zlb, zub, control);
+            // The rest of the node goes best-first only once the probe ran out
+            if (size > 0 || probe > 0 || control.isStopped()) return size;
+        }
+        sorted = true;
+
+        int top = Math.min(zub, ceiling);
+        long skip = top == ceiling ? after : -1;
+        if (top <= zlb) return 0;
+
+        if (histogram.length <= top) histogram = new long[top + 1];
+        Arrays.fill(histogram, 0, top + 1, 0);
+        kernel.start(bounds, W0, Y, ny);
+
+        // First pass: histogram of bounds, staging cuts while they fit into one window;
+        // rows before the end of the probe were all enumerated there
+        long total = 0, rejected = 0, enumerated = 0;
+        int staged = 0;
+        for (int a = row_a; a < nx; a++) {
+            int x1 = X[a];
+            for (int b = a == row_a ? row_b : a; b < nx; b++) {
+                if (control.poll()) return 0;
+                int x2 = X[b];
+                for (int c = a == row_a && b == row_b ? row_c : 0; c < ny; c++) {
+                    int y1 = Y[c];
+                    int from = open_from(L0, W0, x1, x2, y1, c);
+                    int to = open_to(L0, W0, x1, x2, y1, Y, c, ny);
+                    rejected += ny - c - (to - from);
+                    enumerated += to - from;
+
+                    int kept = kernel.row(bounds, L0, W0, x1, x2, y1, Y, from, to, zlb, top, zub);
+                    for (int k = 0; k < kept; k++) {
+                        int bound = kernel.survivor_bounds[k];
+                        long code = code(a, b, c, kernel.survivors[k]);
+                        if (bound == top && code <= skip) continue;
+
+                        histogram[bound]++;
+                        if (total++ < window) {
+                            if (staged == staged_codes.length) grow_staging();
+                            staged_codes[staged] = code;
+                            staged_bounds[staged] = bound;
+                            staged++;
+                        }
+                    }
+                }
+            }
+        }
+        if (first) {
+            // Later windows enumerate the same cuts again
+            symmetric += rejected;
+            candidates += enumerated;
+            first = false;
+        }
+        if (total == 0) {
+            ceiling = zlb;
+            return 0;
+        }
+
+        // Take whole bound levels from the highest non-empty one until the window is full;
+        // only a first level larger than the window is cut short
+        int floor = top;
+        while (histogram[floor] == 0) floor--;
+        long count = histogram[floor];
+        while (floor - 1 > zlb && count + histogram[floor - 1] <= window) {
+            count += histogram[--floor];
+        }
+        size = (int) Math.min(count, window);
+        if (codes.length < size) {
+            codes = new long[size];
+            cut_bounds = new int[size];
+        }
+
+        // Turn the histogram into the first output slot of every bound level
+        long slot = 0;
+        for (int bound = top; bound >= floor; bound--) {
+            long level = histogram[bound];
+            histogram[bound] = slot;
+            slot += level;
+        }
+
+        if (total <= window) {
+            for (int k = 0; k < staged; k++) place(staged_codes[k], staged_bounds[k]);
+        } else {
+            // Second pass: the staged cuts were only a prefix, collect the window again
+            search:
+            for (int a = row_a; a < nx; a++) {
+                int x1 = X[a];
+                for (int b = a == row_a ? row_b : a; b < nx; b++) {
+                    if (control.poll()) {
+                        size = 0;
+                        return 0;
+                    }
+                    int x2 = X[b];
+                    for (int c = a == row_a && b == row_b ? row_c : 0; c < ny; c++) {
+                        int y1 = Y[c];
+                        int from = open_from(L0, W0, x1, x2, y1, c);
+                        int to = open_to(L0, W0, x1, x2, y1, Y, c, ny);
+                        int kept = kernel.row(bounds, L0, W0, x1, x2, y1, Y, from, to, floor - 1, top, zub);
+                        for (int k = 0; k < kept; k++) {
+                            int bound = kernel.survivor_bounds[k];
+                            long code = code(a, b, c, kernel.survivors[k]);
+                            if (bound == top && code <= skip) continue;
+                            if (histogram[bound] >= size) {
+                                // Only the first level can overflow; the rest of it waits
+                                if (bound == floor && count > window) break search;
+                                continue;
+                            }
+                            place(code, bound);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (count > window) {
+            ceiling = floor;
+            after = codes[size - 1];
+        } else {
+            ceiling = floor - 1;
+            after = -1;
+        }
+        window = Math.min(MAX_WINDOW, 2 * window);
+        return size;
+    }
+
+    /**
+     * Collect the next batch of the raster-order probe: cuts with a bound above zlb from the
+     * rows after the last batch, until the batch or the probe is full. Once the rows run
+     * out nothing is left for the best-first part either.
+     */
+    private void fill_raster(int L0, int W0, int[] X, int nx, int[] Y, int ny,
+                             BoundTable bounds, int zlb, int zub, SolveControl control) {
+        if (codes.length < BATCH + ny) {
+            codes = new long[BATCH + ny];
+            cut_bounds = new int[BATCH + ny];
+        }
+        kernel.start(bounds, W0, Y, ny);
+
+        int a = row_a, b = row_b, c = row_c;
+        for (; a < nx; a++, b = a) {
+            int x1 = X[a];
+            for (; b < nx; b++, c = 0) {
+                if (c == 0 && control.poll()) {
+                    size = 0;
+                    return;
+                }
+                int x2 = X[b];
+                for (; c < ny; c++) {
+                    int y1 = Y[c];
+                    int from = open_from(L0, W0, x1, x2, y1, c);
+                    int to = open_to(L0, W0, x1, x2, y1, Y, c, ny);
+                    symmetric += ny - c - (to - from);
+                    candidates += to - from;
+                    probe -= to - from;
+
+                    int kept = kernel.row(bounds, L0, W0, x1, x2, y1, Y, from, to, zlb, zub, zub);
+                    for (int k = 0; k < kept; k++) {
+                        codes[size] = code(a, b, c, kernel.survivors[k]);
+                        cut_bounds[size] = kernel.survivor_bounds[k];
+                        size++;
+                    }
+                    if (size >= BATCH || probe <= 0) {
+                        row_a = a;
+                        row_b = b;
+                        row_c = c + 1;
+                        probe = Math.max(0, probe);
+                        return;
+                    }
+                }
+            }
+        }
+        row_a = nx;
+        ceiling = -1;  // every cut was enumerated
+    }
+
+    /**
+     * Independent copy of the current window and enumeration position
+     */
+    CutQueue copy() {
+        CutQueue queue = new CutQueue();
+        queue.codes = Arrays.copyOf(codes, Math.max(size, 16));
+        queue.cut_bounds = Arrays.copyOf(cut_bounds, Math.max(size, 16));
+        queue.size = size;
+        queue.sorted = sorted;
+        queue.probe = probe;
+        queue.row_a = row_a;
+        queue.row_b = row_b;
+        queue.row_c = row_c;
+        queue.window = window;
+        queue.ceiling = ceiling;
+        queue.after = after;
+        queue.first = first;
+        queue.symmetric = symmetric;
+        queue.candidates = candidates;
+        return queue;
+    }
+
+    private void place(long code, int bound) {
+        int k = (int) histogram[bound]++;
+        codes[k] = code;
+        cut_bounds[k] = bound;
+    }
+
+    private void grow_staging() {
+        int capacity = Math.min(window, staged_codes.length * 2);
+        staged_codes = Arrays.copyOf(staged_codes, capacity);
+        staged_bounds = Arrays.copyOf(staged_bounds, capacity);
+    }
+
+    /**
+     * First y2 index of the non-symmetrical cuts in the row (x1, x2, y1 = Y[c]): c itself,
+     * unless y2 = y1 is symmetrical
+     */
+    private static int open_from(int L0, int W0, int x1, int x2, int y1, int c) {
+        return RecursiveBDModule.isSymmetrical(L0, W0, x1, x2, y1, y1) ? c + 1 : c;
+    }
+
+    /**
+     * End of the y2 indices of the non-symmetrical cuts in the row; past y1 they run
+     * without gaps up to {@link RecursiveBDModule#open_limit}
+     */
+    private static int open_to(int L0, int W0, int x1, int x2, int y1, int[] Y, int c, int ny) {
+        int limit = RecursiveBDModule.open_limit(L0, W0, x1, x2, y1);
+        int i = Arrays.binarySearch(Y, c + 1, ny, limit);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    private static long code(int a, int b, int c, int d) {
+        return ((long) a << 48) | ((long) b << 32) | ((long) c << 16) | d;
+    }
+
+    int size() { return size; }
+
+    /**
+     * Whether the window is sorted by descending bound, so that once one cut cannot beat
+     * the incumbent no later one can
+     */
+    boolean sorted() { return sorted; }
+
+    int bound(int k) { return cut_bounds[k]; }
+    int x1_index(int k) { return (int) (codes[k] >>> 48); }
+    int x2_index(int k) { return (int) (codes[k] >>> 32) & 0xFFFF; }
+    int y1_index(int k) { return (int) (codes[k] >>> 16) & 0xFFFF; }
+    int y2_index(int k) { return (int) codes[k] & 0xFFFF; }
+}
@@ -0,0 +1,100 @@
+package packing.algorithm;
+
+import java.util.*;
+
+/**
+ * Per-node set of five-block cut signatures.
+ * <p>
+ * A cut's count only depends on the sizes of its five sub-blocks, after each is reduced
+ * to raster points and turned into the pallet's orientation, and not on their order.
+ * Cuts with the same sorted sizes are therefore equivalent, and only the first of them
+ * needs to be evaluated. Blocks too small for any box all count as the empty block.
+ */
+class CutSignatures {
+    private long[] keys = new long[3 * 64];  // three longs per slot
+    private int[] stamps = new int[64];      // slot is used when it holds the current stamp
+    private int stamp = 1;
+    private int size;
+    private final long[] codes = new long[5];
+
+    /**
+     * Independent copy holding the same signatures
+     */
+    CutSignatures copy() {
+        CutSignatures copy = new CutSignatures();
+        copy.keys = keys.clone();
+        copy.stamps = stamps.clone();
+        copy.stamp = stamp;
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Forget every signature, in constant time
+     */
+    void clear() {
+        size = 0;
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * Record the signature of the cut held in {@code cut}, five (x, y, L, W) blocks, and
+     * report whether it is new
+     */
+    boolean add(int[] cut, XYGenerator xy_gen, int min_side) {
+        for (int i = 0; i < 5; i++) {
+            int L = cut[4 * i + 2], W = cut[4 * i + 3];
+            if (Math.min(L, W) < min_side) {
+                codes[i] = 0;
+                continue;
+            }
+            if (xy_gen.transposes(L, W)) {
+                int t = L;
+                L = W;
+                W = t;
+            }
+            codes[i] = ((long) xy_gen.get_X_index(L) << 16) | xy_gen.get_Y_index(W);
+        }
+        Arrays.sort(codes);
+        long a = (codes[0] << 32) | codes[1];
+        long b = (codes[2] << 32) | codes[3];
+        long c = codes[4];
+
+        if (2 * (size + 1) > stamps.length) grow();
+        return insert(a, b, c);
+    }
+
+    private boolean insert(long a, long b, long c) {
+        int mask = stamps.length - 1;
+        long h = (a * 0x9E3779B97F4A7C15L) ^ (b * 0xC2B2AE3D27D4EB4FL) ^ (c * 0x165667B19E3779F9L);
+        for (int slot = (int) (h ^ (h >>> 32)) & mask; ; slot = (slot + 1) & mask) {
+            if (stamps[slot] != stamp) {
+                stamps[slot] = stamp;
+                keys[3 * slot] = a;
+                keys[3 * slot + 1] = b;
+                keys[3 * slot + 2] = c;
+                size++;
+                return true;
+            }
+            if (keys[3 * slot] == a && keys[3 * slot + 1] == b && keys[3 * slot + 2] == c) return false;
+        }
+    }
+
+    private void grow() {
+        long[] old_keys = keys;
+        int[] old_stamps = stamps;
+        int old_stamp = stamp;
+        keys = new long[old_keys.length * 2];
+        stamps = new int[old_stamps.length * 2];
+        stamp = 1;
+        size = 0;
+        for (int slot = 0; slot < old_stamps.length; slot++) {
+            if (old_stamps[slot] == old_stamp) {
+                insert(old_keys[3 * slot], old_keys[3 * slot + 1], old_keys[3 * slot + 2]);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package packing.algorithm;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exact solver for guillotine layouts by dynamic programming over raster points.
+ * <p>
+ * Every rectangle is either one homogeneous block or split by a straight cut into two
+ * rectangles that are solved the same way. Only raster point sizes are tabulated, since
+ * any other size packs like its largest raster point. Fast on pallets whose optimum is a
+ * guillotine layout, where the five-block search may need a deep recursion to get there.
+ * The recursion depth of the instance is ignored.
+ */
+public class GuillotineSolver implements PalletSolver {
+    private static final int HOMOGENEOUS = 0;
+
+    private final BoundProvider bound_provider;
+
+    // Constructor
+    public GuillotineSolver(BoundProvider boundProvider) {
+        this.bound_provider = boundProvider;
+    }
+
+    public GuillotineSolver() {
+        this(BoundProvider.DEFAULT);
+    }
+
+    @Override
+    public String name() {
+        return "guillotine";
+    }
+
+    @Override
+    public RecursiveBDModule.Result solve(PalletInstance instance, SolveControl control,
+                                          AtomicInteger shared, IncumbentListener listener) {
+        int L0 = instance.getL0(), W0 = instance.getW0();
+        int l = instance.getBoxL(), w = instance.getBoxW();
+        XYGenerator xy_gen = RasterRegistry.shared().generator(L0, W0, l, w);
+        int[] X = xy_gen.get_X();
+        int[] Y = xy_gen.get_Y();
+        int nx = xy_gen.get_X_size(), ny = xy_gen.get_Y_size();
+        int bound = bound_provider.upper_bound(L0, W0, l, w);
+
+        // counts[i * ny + j]: best count of an X[i] x Y[j] rectangle
+        // choices[i * ny + j]: HOMOGENEOUS, a + 1 for a cut at x = X[a], -(b + 1) for y = Y[b]
+        int[] counts = new int[nx * ny];
+        int[] choices = new int[nx * ny];
+        boolean complete = true;
+
+        fill:
+        for (int i = 0; i < nx; i++) {
+            if (control.poll()) {
+                complete = false;
+                break;
+            }
+            for (int j = 0; j < ny; j++) {
+                int L = X[i], W = Y[j];
+                int best = RecursiveBDModule.compute_zlb(L, W, l, w);
+                int choice = HOMOGENEOUS;
+                int zub = RecursiveBDModule.upper_bound(L, W, l, w);
+
+                // Cuts past the middle mirror earlier ones
+                for (int a = 1; best < zub && a < i && 2 * X[a] <= L; a++) {
+                    int right = xy_gen.get_X_index(L - X[a]) - 1;
+                    int count = counts[a * ny + j] + counts[right * ny + j];
+                    if (count > best) {
+                        best = count;
+                        choice = a + 1;
+                    }
+                }
+                for (int b = 1; best < zub && b < j && 2 * Y[b] <= W; b++) {
+                    int top = xy_gen.get_Y_index(W - Y[b]) - 1;
+                    int count = counts[i * ny + b] + counts[i * ny + top];
+                    if (count > best) {
+                        best = count;
+                        choice = -(b + 1);
+                    }
+                }
+                counts[i * ny + j] = best;
+                choices[i * ny + j] = choice;
+            }
+            // Nothing left to prove once another engine holds the pallet's bound
+            if (shared.get() >= bound) {
+                complete = false;
+                break fill;
+            }
+        }
+
+        RecursiveBDModule.Result result;
+        if (complete && nx > 0 && ny > 0) {
+            BlockList blocks = layout(X, Y, ny, counts, choices, xy_gen, nx - 1, ny - 1,
+                    instance.getXOffset(), instance.getYOffset());
+            int count = counts[(nx - 1) * ny + ny - 1];
+            result = new RecursiveBDModule.Result(count, blocks, count >= bound, false, l, w);
+        } else {
+            // Unfinished tables say nothing about the whole pallet; fall back to one block
+            int count = RecursiveBDModule.compute_zlb(L0, W0, l, w);
+            BlockList blocks = count == 0 ? new BlockList(0)
+                    : BlockList.of(instance.getXOffset(), instance.getYOffset(), L0, W0);
+            result = new RecursiveBDModule.Result(count, blocks, count >= bound, control.isStopped(), l, w);
+        }
+        if (listener != null && result.getCount() > 0) listener.onIncumbent(result);
+        return result;
+    }
+
+    /**
+     * Walk the recorded cuts from the full pallet down to its homogeneous blocks
+     */
+    private static BlockList layout(int[] X, int[] Y, int ny, int[] counts, int[] choices,
+                                    XYGenerator xy_gen, int i0, int j0, int x_offset, int y_offset) {
+        BlockList blocks = new BlockList();
+        Deque<int[]> pending = new ArrayDeque<>();  // (i, j, x, y) of rectangles still to split
+        pending.push(new int[]{i0, j0, x_offset, y_offset});
+        while (!pending.isEmpty()) {
+            int[] rect = pending.pop();
+            int i = rect[0], j = rect[1], x = rect[2], y = rect[3];
+            int choice = choices[i * ny + j];
+            if (choice == HOMOGENEOUS) {
+                if (counts[i * ny + j] > 0) blocks.add(x, y, X[i], Y[j]);
+            } else if (choice > 0) {
+                int a = choice - 1;
+                pending.push(new int[]{xy_gen.get_X_index(X[i] - X[a]) - 1, j, x + X[a], y});
+                pending.push(new int[]{a, j, x, y});
+            } else {
+                int b = -choice - 1;
+                pending.push(new int[]{i, xy_gen.get_Y_index(Y[j] - Y[b]) - 1, x, y + Y[b]});
+                pending.push(new int[]{i, b, x, y});
+            }
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,12 @@
+package packing.algorithm;
+
+/**
+ * Receives every improved top-level solution while a solve is running.
+ * <p>
+ * With a parallel solver the listener is called from the pool's worker threads, one call
+ * at a time and in order of increasing count.
+ */
+@FunctionalInterface
+public interface IncumbentListener {
+    void onIncumbent(RecursiveBDModule.Result incumbent);
+}
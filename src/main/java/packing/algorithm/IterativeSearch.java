@@ -0,0 +1,376 @@
+package packing.algorithm;
+
+/**
+ * Block decomposition search driven by an explicit stack of per-depth frames.
+ * <p>
+ * Expands the same cuts in the same order as the sequential {@link RecursiveBDModule}
+ * search, so it finds the same layouts. All search state lives in one preallocated frame
+ * per depth instead of on the thread's stack, so memory is bounded by the depth, and a
+ * search can be paused, copied with {@link #snapshot()} and resumed later on any thread.
+ */
+public class IterativeSearch {
+    /**
+     * Outcome of a call to {@link #run()}
+     */
+    public enum Status {
+        PAUSED,  // stopped at a pause request; call run() again to continue
+        DONE     // finished or stopped by its control; the result is available
+    }
+
+    // Frame phases
+    private static final int START = 0;  // bounds and base cases of a new node
+    private static final int FILL = 1;   // collect the next window of cuts
+    private static final int CUT = 2;    // set up the next cut of the window
+    private static final int CHILD = 3;  // solve the next sub-block of the cut
+    private static final int WAIT = 4;   // a sub-block is being solved one level deeper
+    private static final int NEXT = 5;   // keep the cut if it improved the node
+
+    private final int L0, W0, N, l, w;
+    private final XYGenerator xy_gen;
+    private final BoundTable bounds;
+    private final SubproblemCache cache;
+    private final SolveControl control;
+    private final Frame[] frames;
+    private int top;  // depth of the node being searched, -1 once done
+    private RecursiveBDModule.Result result;
+    private volatile boolean pause_requested;
+
+    // Constructor
+    public IterativeSearch(int L0, int W0, int N0, int l0, int w0, BoundProvider boundProvider,
+                           SubproblemCache subproblemCache, SolveControl solveControl) {
+        if (l0 <= 0 || w0 <= 0)
+            throw new IllegalArgumentException("box sides must be positive: " + l0 + "x" + w0);
+        if (L0 < 0 || W0 < 0 || N0 < 0)
+            throw new IllegalArgumentException("invalid instance: " + L0 + "x" + W0 + " N0=" + N0);
+        if (Math.max(L0, W0) > SubproblemCache.MAX_SIDE || N0 > SubproblemCache.MAX_DEPTH)
+            throw new IllegalArgumentException("instance too large for the subproblem cache: "
+                    + L0 + "x" + W0 + " N0=" + N0);
+        this.L0 = L0;
+        this.W0 = W0;
+        this.N = N0;
+        this.l = l0;
+        this.w = w0;
+        this.xy_gen = RasterRegistry.shared().generator(L0, W0, l0, w0);
+        this.bounds = new BoundTable(xy_gen, boundProvider, l0, w0);
+        this.cache = subproblemCache;
+        this.control = solveControl;
+        this.frames = new Frame[N0 + 1];
+        for (int i = 0; i < frames.length; i++) frames[i] = new Frame();
+        cache.bind(l0, w0);  // entries stay valid for every pallet with this carton
+        this.top = 0;
+        frames[0].enter(xy_gen.reduce(L0), xy_gen.reduce(W0));
+    }
+
+    public IterativeSearch(int L0, int W0, int N0, int l0, int w0) {
+        this(L0, W0, N0, l0, w0, BoundProvider.DEFAULT, new SubproblemCache(), new SolveControl());
+    }
+
+    /**
+     * Copy of another search at the point where it is paused
+     */
+    private IterativeSearch(IterativeSearch other) {
+        this.L0 = other.L0;
+        this.W0 = other.W0;
+        this.N = other.N;
+        this.l = other.l;
+        this.w = other.w;
+        this.xy_gen = other.xy_gen;
+        this.bounds = other.bounds;
+        this.cache = other.cache;
+        this.control = other.control;
+        this.frames = new Frame[other.frames.length];
+        for (int i = 0; i < frames.length; i++) frames[i] = other.frames[i].copy();
+        this.top = other.top;
+        this.result = other.result;
+    }
+
+    /**
+     * Ask a running search to pause at its next step; may be called from any thread
+     */
+    public void pause() {
+        pause_requested = true;
+    }
+
+    /**
+     * Independent copy of this search that continues from the same point. Both copies
+     * share the subproblem cache and the control. Blocks while the search is running.
+     */
+    public synchronized IterativeSearch snapshot() {
+        return new IterativeSearch(this);
+    }
+
+    /**
+     * Search until the layout is final, the control stops the search or a pause is requested
+     */
+    public synchronized Status run() {
+        while (result == null) {
+            if (pause_requested) {
+                pause_requested = false;
+                return Status.PAUSED;
+            }
+            step(frames[top], top);
+        }
+        return Status.DONE;
+    }
+
+    /**
+     * Final layout, or null while the search has not finished
+     */
+    public synchronized RecursiveBDModule.Result getResult() {
+        return result;
+    }
+
+    /**
+     * Best count found so far for the whole pallet
+     */
+    public synchronized int getIncumbent() {
+        return result != null ? result.getCount() : Math.max(0, frames[0].zlb);
+    }
+
+    /**
+     * Depth of the node currently being searched, or -1 once the search is done
+     */
+    public synchronized int getDepth() {
+        return result != null ? -1 : top;
+    }
+
+    /**
+     * Advance the node at depth n by one phase
+     */
+    private void step(Frame frame, int n) {
+        int[] X = xy_gen.get_X();
+        int[] Y = xy_gen.get_Y();
+        int[] cut = frame.cut;
+
+        switch (frame.phase) {
+            case START -> {
+                frame.zlb = RecursiveBDModule.compute_zlb(frame.L0, frame.W0, l, w);
+                frame.zub = bounds.get(frame.L0, frame.W0);
+                if (frame.zlb == 0) {
+                    leave(n, new RecursiveBDModule.Result(0, new BlockList(0)));
+                } else if (frame.zlb == frame.zub) {
+                    leave(n, new RecursiveBDModule.Result(frame.zlb, BlockList.of(0, 0, frame.L0, frame.W0)));
+                } else {
+                    frame.nx = xy_gen.get_X_length(frame.L0, frame.W0);
+                    frame.ny = xy_gen.get_Y_length(frame.L0, frame.W0);
+                    frame.queue.start(n < N);
+                    frame.seen.clear();
+                    frame.phase = FILL;
+                }
+            }
+            case FILL -> {
+                if (frame.zlb >= frame.zub || control.poll()) {
+                    leave(n, frame.node_result());
+                    return;
+                }
+                frame.size = frame.queue.fill(frame.L0, frame.W0, X, frame.nx, Y, frame.ny,
+                        bounds, frame.zlb, frame.zub, control);
+                frame.k = 0;
+                if (frame.size == 0) leave(n, frame.node_result());
+                else frame.phase = CUT;
+            }
+            case CUT -> {
+                CutQueue queue = frame.queue;
+                int k = frame.k;
+                // In a sorted window no later cut can beat the incumbent either
+                if (k >= frame.size || queue.bound(k) <= frame.zlb && queue.sorted()) {
+                    frame.phase = FILL;
+                    return;
+                }
+                if (queue.bound(k) <= frame.zlb) {
+                    frame.k++;
+                    return;
+                }
+                if (control.isStopped()) {
+                    leave(n, frame.node_result());
+                    return;
+                }
+
+                int x1 = X[queue.x1_index(k)], x2 = X[queue.x2_index(k)];
+                int y1 = Y[queue.y1_index(k)], y2 = Y[queue.y2_index(k)];
+                int L1 = x1, W1 = frame.W0 - y1;
+                int L2 = frame.L0 - x1, W2 = frame.W0 - y2;
+                int L3 = x2 - x1, W3 = y2 - y1;
+                int L4 = x2, W4 = y1;
+                int L5 = frame.L0 - x2, W5 = y2;
+                set_block(cut, 0, 0, W4, L1, W1);
+                set_block(cut, 1, L1, W3 + W4, L2, W2);
+                set_block(cut, 2, L1, W4, L3, W3);
+                set_block(cut, 3, 0, 0, L4, W4);
+                set_block(cut, 4, L1 + L3, 0, L5, W5);
+
+                if (n < N) {
+                    // Same sub-blocks in another arrangement, so the same count
+                    if (!frame.seen.add(cut, xy_gen, Math.min(l, w))) {
+                        frame.k++;
+                        return;
+                    }
+                    for (int i = 0; i < 5; i++) frame.zi[i] = bounds.get(cut[4 * i + 2], cut[4 * i + 3]);
+                    frame.temp.clear();
+                    frame.z_0 = RecursiveBDModule.sum_vector(frame.zi);
+                    frame.i = 0;
+                    frame.phase = CHILD;
+                } else {
+                    // At max recursion, compute lower bounds
+                    int z_0 = 0;
+                    for (int i = 0; i < 5; i++) {
+                        z_0 += RecursiveBDModule.compute_zlb(cut[4 * i + 2], cut[4 * i + 3], l, w);
+                    }
+                    frame.z_0 = z_0;
+                    frame.phase = NEXT;
+                }
+            }
+            case CHILD -> {
+                int i = frame.i;
+                if (i >= 5 || frame.zlb >= frame.z_0) {
+                    frame.phase = NEXT;
+                    return;
+                }
+                // Sub-blocks are solved in the same normal form as in the recursive search
+                int L = cut[4 * i + 2], W = cut[4 * i + 3];
+                frame.transposed = xy_gen.transposes(L, W);
+                if (frame.transposed) {
+                    int t = L;
+                    L = W;
+                    W = t;
+                }
+                L = xy_gen.reduce(L);
+                W = xy_gen.reduce(W);
+                RecursiveBDModule.Result cached = cache.get(SubproblemCache.key(L, W, N - n - 1));
+                if (cached != null) {
+                    accept_child(frame, cached);
+                } else {
+                    frame.phase = WAIT;
+                    top = n + 1;
+                    frames[top].enter(L, W);
+                }
+            }
+            case NEXT -> {
+                if (frame.z_0 > frame.zlb) {
+                    frame.zlb = frame.z_0;
+                    frame.keep_best(n == N);
+                    frame.improved = true;
+
+                    // Early exit if upper bound reached
+                    if (frame.zlb == frame.zub) {
+                        leave(n, frame.node_result());
+                        return;
+                    }
+                }
+                frame.k++;
+                frame.phase = CUT;
+            }
+            default -> throw new IllegalStateException("frame at depth " + n + " in phase " + frame.phase);
+        }
+    }
+
+    /**
+     * Hand the result of the node at depth n to its parent, caching it if it is complete
+     */
+    private void leave(int n, RecursiveBDModule.Result node) {
+        Frame frame = frames[n];
+
+        // A stopped search may have skipped cuts, so its result is not reusable
+        if (!control.isStopped()) cache.put(SubproblemCache.key(frame.L0, frame.W0, N - n), node);
+        if (n == 0) {
+            finish(node);
+        } else {
+            top = n - 1;
+            accept_child(frames[top], node);
+        }
+    }
+
+    private void accept_child(Frame frame, RecursiveBDModule.Result child) {
+        int i = frame.i;
+        frame.zi[i] = child.getCount();
+        if (frame.transposed) frame.temp.addAllTransposed(child.getBlockList(), frame.cut[4 * i], frame.cut[4 * i + 1]);
+        else frame.temp.addAll(child.getBlockList(), frame.cut[4 * i], frame.cut[4 * i + 1]);
+        if (control.isStopped()) {
+            frame.z_0 = -1;  // abandon the cut
+            frame.phase = NEXT;
+        } else {
+            frame.z_0 = RecursiveBDModule.sum_vector(frame.zi);
+            frame.i = i + 1;
+            frame.phase = CHILD;
+        }
+    }
+
+    private void finish(RecursiveBDModule.Result root) {
+        top = -1;
+        result = new RecursiveBDModule.Result(root.getCount(), root.getBlockList(),
+                root.getCount() >= bounds.get(L0, W0), control.isStopped(), l, w);
+    }
+
+    private static void set_block(int[] cut, int i, int x, int y, int L, int W) {
+        cut[4 * i] = x;
+        cut[4 * i + 1] = y;
+        cut[4 * i + 2] = L;
+        cut[4 * i + 3] = W;
+    }
+
+    /**
+     * State of the node being searched at one depth, reused by every node at that depth
+     */
+    private static class Frame {
+        private int L0, W0;
+        private int phase;
+        private int zlb, zub;
+        private boolean improved;
+        private int nx, ny;
+        private int size, k;   // current window of cuts and the cut being evaluated
+        private int i, z_0;    // sub-block being solved and the cut's count so far
+        private boolean transposed;  // whether that sub-block is solved as its transpose
+        private CutQueue queue = new CutQueue();
+        private CutSignatures seen = new CutSignatures();
+        private int[] cut = new int[20];  // the five candidate blocks, (x, y, L, W) each
+        private int[] zi = new int[5];
+        private BlockList temp = new BlockList();
+        private BlockList best = new BlockList();
+
+        private void enter(int L0, int W0) {
+            this.L0 = L0;
+            this.W0 = W0;
+            this.phase = START;
+            this.improved = false;
+        }
+
+        private RecursiveBDModule.Result node_result() {
+            return new RecursiveBDModule.Result(zlb, improved ? best.copy() : BlockList.of(0, 0, L0, W0));
+        }
+
+        private void keep_best(boolean at_max_depth) {
+            if (at_max_depth) {
+                best.clear();
+                best.addAll(cut, 5, 0, 0);
+            } else {
+                BlockList swap = best;
+                best = temp;
+                temp = swap;
+            }
+        }
+
+        private Frame copy() {
+            Frame frame = new Frame();
+            frame.L0 = L0;
+            frame.W0 = W0;
+            frame.phase = phase;
+            frame.zlb = zlb;
+            frame.zub = zub;
+            frame.improved = improved;
+            frame.nx = nx;
+            frame.ny = ny;
+            frame.size = size;
+            frame.k = k;
+            frame.i = i;
+            frame.z_0 = z_0;
+            frame.transposed = transposed;
+            frame.queue = queue.copy();
+            frame.seen = seen.copy();
+            frame.cut = cut.clone();
+            frame.zi = zi.clone();
+            frame.temp = temp.copy();
+            frame.best = best.copy();
+            return frame;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package packing.algorithm;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Layer-based 3D loading of identical cartons on a pallet or into a container.
+ * <p>
+ * A load is a stack of layers. Every layer is a 2D block decomposition of the pallet
+ * floor with one carton side standing upright, so a carton gives up to three layer types,
+ * one per face that may serve as its base. Each layer type is solved once, all missing
+ * ones in parallel on the solver's pool, and memoized for later loads. Which layers to stack is then an
+ * unbounded knapsack over the height; a weight limit caps the number of cartons, so the
+ * top layers are filled only partly when the weight runs out before the height.
+ */
+public class LayerLoading {
+    private final RecursiveBDModule solver;
+    private final Map<PalletInstance, RecursiveBDModule.Result> layers = new ConcurrentHashMap<>();
+
+    /**
+     * Receives one placed carton: its corner and its sides along x, y and z (up)
+     */
+    @FunctionalInterface
+    public interface BoxConsumer {
+        void accept(int x, int y, int z, int l, int w, int h);
+    }
+
+    // Constructor
+    public LayerLoading(RecursiveBDModule solver) {
+        this.solver = solver;
+    }
+
+    public LayerLoading() {
+        this(new RecursiveBDModule());
+    }
+
+    /**
+     * Number of layer types solved so far
+     */
+    public int getLayerTypes() {
+        return layers.size();
+    }
+
+    /**
+     * Receives every load that improves on the ones reported before while layers are
+     * still being solved; called from the solving threads, one call at a time
+     */
+    @FunctionalInterface
+    public interface LoadListener {
+        void onLoad(Result load);
+    }
+
+    /**
+     * Stack layers of a x b x c cartons on an L0 x W0 pallet up to height H0.
+     * <p>
+     * Once {@code control} stops, layers still being solved keep their best layout so far
+     * and the load is flagged as stopped; such layers are not memoized. Every improved
+     * layer layout found on the way is stacked into a full load for {@code listener}.
+     *
+     * @param upright     which carton sides (a, b, c) may stand upright, or null for all
+     * @param boxWeight   weight of one carton
+     * @param maxWeight   weight limit of the load, or 0 for none
+     */
+    public Result load(int L0, int W0, int H0, int N0, int a, int b, int c,
+                       boolean[] upright, double boxWeight, double maxWeight,
+                       SolveControl control, LoadListener listener) {
+        if (a <= 0 || b <= 0 || c <= 0)
+            throw new IllegalArgumentException("carton sides must be positive: " + a + "x" + b + "x" + c);
+        if (L0 < 0 || W0 < 0 || H0 < 0 || N0 < 0)
+            throw new IllegalArgumentException("invalid load: " + L0 + "x" + W0 + "x" + H0 + " N0=" + N0);
+        if (upright != null && upright.length != 3)
+            throw new IllegalArgumentException("upright needs one flag per carton side");
+        if (maxWeight > 0 && boxWeight <= 0)
+            throw new IllegalArgumentException("weight limit needs a positive carton weight");
+
+        // Layer types: (base l, base w, height), one per allowed distinct upright side
+        int[] sides = {a, b, c};
+        List<int[]> types = new ArrayList<>(3);
+        for (int i = 0; i < 3; i++) {
+            if (upright != null && !upright[i]) continue;
+            int h = sides[i];
+            int l = sides[(i + 1) % 3], w = sides[(i + 2) % 3];
+            boolean seen = false;  // equal heights leave equal bases
+            for (int[] type : types) seen |= type[2] == h;
+            if (!seen && h <= H0) types.add(new int[]{Math.max(l, w), Math.min(l, w), h});
+        }
+
+        // Layers already memoized are final; the rest start empty and improve while solving
+        List<PalletInstance> floors = new ArrayList<>(types.size());
+        RecursiveBDModule.Result[] current = new RecursiveBDModule.Result[types.size()];
+        Map<PalletInstance, List<Integer>> missing = new LinkedHashMap<>();
+        for (int t = 0; t < types.size(); t++) {
+            PalletInstance floor = new PalletInstance(L0, W0, N0, types.get(t)[0], types.get(t)[1]);
+            floors.add(floor);
+            RecursiveBDModule.Result known = layers.get(floor.canonical());
+            if (known != null) {
+                current[t] = floor.from_canonical(known);
+            } else {
+                current[t] = new RecursiveBDModule.Result(0, new BlockList(0), false, false,
+                        floor.getBoxL(), floor.getBoxW());
+                missing.computeIfAbsent(floor.canonical(), k -> new ArrayList<>()).add(t);
+            }
+        }
+
+        // Solve the missing layer types in parallel, restacking on every improved layer
+        int[] reported = {0};
+        List<ForkJoinTask<RecursiveBDModule.Result>> solves = new ArrayList<>(missing.size());
+        for (Map.Entry<PalletInstance, List<Integer>> entry : missing.entrySet()) {
+            PalletInstance key = entry.getKey();
+            List<Integer> uses = entry.getValue();
+            IncumbentListener improved = listener == null ? null : incumbent -> {
+                synchronized (current) {
+                    for (int t : uses) {
+                        if (incumbent.getCount() > current[t].getCount())
+                            current[t] = floors.get(t).from_canonical(incumbent);
+                    }
+                    Result load = stack(L0, W0, H0, types, current, boxWeight, maxWeight, false);
+                    if (load.getCount() > reported[0]) {
+                        reported[0] = load.getCount();
+                        listener.onLoad(load);
+                    }
+                }
+            };
+            solves.add(ForkJoinTask.adapt(() -> {
+                RecursiveBDModule layer_solver = new RecursiveBDModule(null);
+                layer_solver.setBoundProvider(solver.getBoundProvider());
+                layer_solver.setSolutionStore(solver.getSolutionStore());
+                return layer_solver.palletLoading(key.getL0(), key.getW0(), 0, key.getN0(),
+                        key.getBoxL(), key.getBoxW(), control, improved);
+            }));
+        }
+        if (!solves.isEmpty()) {
+            ForkJoinPool pool = solver.getPool();
+            if (pool == null) {
+                for (ForkJoinTask<RecursiveBDModule.Result> solve : solves) solve.invoke();
+            } else {
+                pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(solves)));
+            }
+        }
+
+        boolean stopped = false;
+        int s = 0;
+        for (Map.Entry<PalletInstance, List<Integer>> entry : missing.entrySet()) {
+            RecursiveBDModule.Result solved = solves.get(s++).join();
+            if (solved.isStopped()) stopped = true;
+            else layers.putIfAbsent(entry.getKey(), solved);
+            for (int t : entry.getValue()) current[t] = floors.get(t).from_canonical(solved);
+        }
+        synchronized (current) {
+            return stack(L0, W0, H0, types, current, boxWeight, maxWeight, stopped);
+        }
+    }
+
+    /**
+     * Load with every layer solved to completion
+     */
+    public Result load(int L0, int W0, int H0, int N0, int a, int b, int c,
+                       boolean[] upright, double boxWeight, double maxWeight) {
+        return load(L0, W0, H0, N0, a, b, c, upright, boxWeight, maxWeight, new SolveControl(), null);
+    }
+
+    /**
+     * Load of a x b x c cartons with every side allowed upright and no weight limit
+     */
+    public Result load(int L0, int W0, int H0, int N0, int a, int b, int c) {
+        return load(L0, W0, H0, N0, a, b, c, null, 0, 0);
+    }
+
+    /**
+     * Best stack of the given layer layouts within the height and weight limits
+     */
+    private static Result stack(int L0, int W0, int H0, List<int[]> types, RecursiveBDModule.Result[] results,
+                                double boxWeight, double maxWeight, boolean stopped) {
+        int[] counts = new int[types.size()];
+        for (int t = 0; t < types.size(); t++) counts[t] = results[t].getCount();
+
+        // Unbounded knapsack over the height: best[h] is the most cartons in layers of total height h
+        int[] best = new int[H0 + 1];
+        int[] last = new int[H0 + 1];  // layer type on top of the stack for best[h], -1 for none
+        Arrays.fill(last, -1);
+        for (int h = 1; h <= H0; h++) {
+            best[h] = best[h - 1];
+            last[h] = -1;
+            for (int t = 0; t < types.size(); t++) {
+                int below = h - types.get(t)[2];
+                if (below >= 0 && best[below] + counts[t] > best[h]) {
+                    best[h] = best[below] + counts[t];
+                    last[h] = t;
+                }
+            }
+        }
+
+        // Walk the stack back down, fullest layers at the bottom
+        List<Integer> stack = new ArrayList<>();
+        for (int h = H0; h > 0; ) {
+            int t = last[h];
+            if (t < 0) {
+                h--;
+            } else {
+                stack.add(t);
+                h -= types.get(t)[2];
+            }
+        }
+        stack.sort((s, u) -> counts[u] != counts[s] ? Integer.compare(counts[u], counts[s])
+                : Integer.compare(types.get(s)[2], types.get(u)[2]));
+
+        // The weight limit cuts the stack short, the top layer possibly partly filled
+        long allowed = maxWeight > 0 ? (long) Math.floor(maxWeight / boxWeight + 1e-9) : Long.MAX_VALUE;
+        List<Layer> stacked = new ArrayList<>(stack.size());
+        int z = 0;
+        long total = 0;
+        for (int t : stack) {
+            if (total >= allowed || counts[t] == 0) break;
+            int placed = (int) Math.min(counts[t], allowed - total);
+            int[] type = types.get(t);
+            stacked.add(new Layer(z, type[2], placed, results[t]));
+            z += type[2];
+            total += placed;
+        }
+        return new Result(L0, W0, H0, stacked, (int) total, z, total * boxWeight, stopped);
+    }
+
+    /**
+     * One layer of a load: a 2D layout of cartons standing on the same face
+     */
+    public static class Layer {
+        private final int z;
+        private final int height;
+        private final int count;
+        private final RecursiveBDModule.Result layout;
+
+        Layer(int z, int height, int count, RecursiveBDModule.Result layout) {
+            this.z = z;
+            this.height = height;
+            this.count = count;
+            this.layout = layout;
+        }
+
+        public int getZ() { return z; }
+        public int getHeight() { return height; }
+
+        /**
+         * Cartons loaded in this layer; below the layout's count for a partly filled top layer
+         */
+        public int getCount() { return count; }
+
+        /**
+         * The full 2D layout of the layer
+         */
+        public RecursiveBDModule.Result getLayout() { return layout; }
+
+        public boolean isPartial() { return count < layout.getCount(); }
+
+        /**
+         * Hand every loaded carton of this layer to the action
+         */
+        public void forEach(BoxConsumer action) {
+            int[] left = {count};
+            layout.getPlacements().forEach((x, y, l, w) -> {
+                if (left[0]-- > 0) action.accept(x, y, z, l, w, height);
+            });
+        }
+    }
+
+    /**
+     * Layers of a load from the floor up
+     */
+    public static class Result {
+        private final int L0, W0, H0;
+        private final List<Layer> layers;
+        private final int count;
+        private final int height;
+        private final double weight;
+        private final boolean stopped;
+
+        Result(int L0, int W0, int H0, List<Layer> layers, int count, int height, double weight,
+               boolean stopped) {
+            this.L0 = L0;
+            this.W0 = W0;
+            this.H0 = H0;
+            this.layers = List.copyOf(layers);
+            this.count = count;
+            this.height = height;
+            this.weight = weight;
+            this.stopped = stopped;
+        }
+
+        public int getL0() { return L0; }
+        public int getW0() { return W0; }
+        public int getH0() { return H0; }
+        public List<Layer> getLayers() { return layers; }
+        public int getCount() { return count; }
+
+        /**
+         * Height of the stack, at most H0
+         */
+        public int getHeight() { return height; }
+
+        public double getWeight() { return weight; }
+
+        /**
+         * Whether some layer was cut short by the control, so a better load may exist
+         */
+        public boolean isStopped() { return stopped; }
+
+        /**
+         * Hand every loaded carton, layer by layer from the floor up, to the action
+         */
+        public void forEach(BoxConsumer action) {
+            for (Layer layer : layers) layer.forEach(action);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package packing.algorithm;
+
+import java.util.*;
+
+/**
+ * Checks that a layout is feasible: every box lies on the pallet, no two boxes overlap and
+ * the number of boxes matches the reported count.
+ * <p>
+ * Overlaps are found with a sweep over x in O(n log n): boxes enter and leave a set of
+ * y intervals ordered by their start, and as long as no overlap has been seen the set is
+ * disjoint, so a new interval only needs to be compared with its two neighbours. Layouts
+ * of hundreds of thousands of boxes are checked in well under a second.
+ */
+public final class LayoutValidator {
+    private static final int MAX_PROBLEMS = 10;
+
+    private LayoutValidator() {
+    }
+
+    /**
+     * Outcome of a check; a valid layout has no problems
+     */
+    public static class Report {
+        private final int boxes;
+        private final List<String> problems = new ArrayList<>();
+        private int total_problems;
+
+        Report(int boxes) {
+            this.boxes = boxes;
+        }
+
+        private void problem(String description) {
+            if (total_problems++ < MAX_PROBLEMS) problems.add(description);
+        }
+
+        public boolean isValid() { return total_problems == 0; }
+
+        /**
+         * Number of boxes checked
+         */
+        public int getBoxes() { return boxes; }
+
+        /**
+         * The first few problems found
+         */
+        public List<String> getProblems() { return Collections.unmodifiableList(problems); }
+
+        public int getProblemCount() { return total_problems; }
+
+        @Override
+        public String toString() {
+            if (isValid()) return "valid layout of " + boxes + " boxes";
+            return total_problems + " problems in a layout of " + boxes + " boxes: " + String.join("; ", problems)
+                    + (total_problems > problems.size() ? "; ..." : "");
+        }
+    }
+
+    /**
+     * Check the layout of a result for an L0 x W0 pallet at the given offsets
+     */
+    public static Report check(RecursiveBDModule.Result result, int L0, int W0, int x_offset, int y_offset) {
+        Placements placements = result.getPlacements();
+        int l = placements.getBoxL(), w = placements.getBoxW();
+        BlockList boxes = new BlockList(placements.size());
+        placements.forEach(boxes::add);
+
+        Report report = new Report(boxes.size());
+        if (boxes.size() != result.getCount()) {
+            report.problem("count " + result.getCount() + " but " + boxes.size() + " boxes placed");
+        }
+        for (int i = 0; i < boxes.size(); i++) {
+            int bl = boxes.getL(i), bw = boxes.getW(i);
+            if (!(bl == l && bw == w) && !(bl == w && bw == l)) {
+                report.problem("box " + i + " is " + bl + "x" + bw + ", not " + l + "x" + w);
+            }
+        }
+        contained(boxes, x_offset, y_offset, L0, W0, "box", report);
+
+        // Blocks that are too small for a box place nothing, but must still be on the pallet
+        contained(result.getBlockList(), x_offset, y_offset, L0, W0, "block", report);
+
+        if (report.isValid()) overlaps(boxes, "box", report);
+        return report;
+    }
+
+    public static Report check(RecursiveBDModule.Result result, int L0, int W0) {
+        return check(result, L0, W0, 0, 0);
+    }
+
+    /**
+     * Check that the rectangles, (x, y, L, W) each, lie in the region and do not overlap
+     */
+    public static Report check_rectangles(BlockList rectangles, int x0, int y0, int L0, int W0) {
+        Report report = new Report(rectangles.size());
+        contained(rectangles, x0, y0, L0, W0, "rectangle", report);
+        if (report.isValid()) overlaps(rectangles, "rectangle", report);
+        return report;
+    }
+
+    private static void contained(BlockList rectangles, int x0, int y0, int L0, int W0,
+                                  String kind, Report report) {
+        for (int i = 0; i < rectangles.size(); i++) {
+            long x = rectangles.getX(i), y = rectangles.getY(i);
+            long L = rectangles.getL(i), W = rectangles.getW(i);
+            if (L < 0 || W < 0 || x < x0 || y < y0 || x + L > (long) x0 + L0 || y + W > (long) y0 + W0) {
+                report.problem(kind + " " + i + " at (" + x + ", " + y + ") size " + L + "x" + W
+                        + " leaves the " + L0 + "x" + W0 + " pallet");
+            }
+        }
+    }
+
+    /**
+     * Report the first overlapping pair; rectangles must already be known to be contained
+     */
+    private static void overlaps(BlockList rectangles, String kind, Report report) {
+        int n = rectangles.size();
+        int min_x = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) min_x = Math.min(min_x, rectangles.getX(i));
+
+        // Events as (x, enter, index) in one long each, so leaving sorts before entering at
+        // the same x and touching rectangles do not count as overlapping
+        long[] events = new long[2 * n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (rectangles.getL(i) == 0 || rectangles.getW(i) == 0) continue;
+            long x1 = rectangles.getX(i) - (long) min_x;
+            long x2 = x1 + rectangles.getL(i);
+            events[count++] = (x1 << 32) | (1L << 31) | i;
+            events[count++] = (x2 << 32) | i;
+        }
+        Arrays.sort(events, 0, count);
+
+        TreeMap<Integer, Integer> active = new TreeMap<>();  // y start -> rectangle
+        for (int k = 0; k < count; k++) {
+            long event = events[k];
+            int i = (int) (event & 0x7FFFFFFF);
+            int y1 = rectangles.getY(i), y2 = y1 + rectangles.getW(i);
+            if ((event & (1L << 31)) == 0) {
+                active.remove(y1, i);
+                continue;
+            }
+
+            Map.Entry<Integer, Integer> below = active.floorEntry(y1);
+            Map.Entry<Integer, Integer> above = active.ceilingEntry(y1);
+            int other = -1;
+            if (below != null && below.getKey() + rectangles.getW(below.getValue()) > y1) other = below.getValue();
+            else if (above != null && above.getKey() < y2) other = above.getValue();
+            if (other >= 0) {
+                report.problem(kind + " " + other + " " + describe(rectangles, other)
+                        + " overlaps " + kind + " " + i + " " + describe(rectangles, i));
+                return;
+            }
+            active.put(y1, i);
+        }
+    }
+
+    private static String describe(BlockList rectangles, int i) {
+        return "(" + rectangles.getX(i) + ", " + rectangles.getY(i) + ", "
+                + rectangles.getL(i) + "x" + rectangles.getW(i) + ")";
+    }
+}
@@ -0,0 +1,134 @@
+package packing.algorithm;
+
+import java.util.*;
+
+/**
+ * One pallet loading instance: an L0 x W0 pallet, l0 x w0 boxes and recursion depth N0.
+ * <p>
+ * Many instances are equivalent: swapping the pallet or box sides, shrinking the pallet
+ * to the largest combination of box sides that fits, or dividing every side by the
+ * common factor of the box sides all leave the set of packings unchanged.
+ * {@link #canonical()} maps an instance to one representative of its class, and
+ * {@link #from_canonical} maps a solution of that representative back.
+ */
+public class PalletInstance {
+    private final int L0;
+    private final int W0;
+    private final int N0;
+    private final int l0;
+    private final int w0;
+    private final int x_offset;
+    private final int y_offset;
+
+    public PalletInstance(int L0, int W0, int N0, int l0, int w0, int x_offset, int y_offset) {
+        if (l0 <= 0 || w0 <= 0)
+            throw new IllegalArgumentException("box sides must be positive: " + l0 + "x" + w0);
+        if (L0 < 0 || W0 < 0 || N0 < 0)
+            throw new IllegalArgumentException("invalid instance: " + L0 + "x" + W0 + " N0=" + N0);
+        this.L0 = L0;
+        this.W0 = W0;
+        this.N0 = N0;
+        this.l0 = l0;
+        this.w0 = w0;
+        this.x_offset = x_offset;
+        this.y_offset = y_offset;
+    }
+
+    public PalletInstance(int L0, int W0, int N0, int l0, int w0) {
+        this(L0, W0, N0, l0, w0, 0, 0);
+    }
+
+    public int getL0() { return L0; }
+    public int getW0() { return W0; }
+    public int getN0() { return N0; }
+    public int getBoxL() { return l0; }
+    public int getBoxW() { return w0; }
+    public int getXOffset() { return x_offset; }
+    public int getYOffset() { return y_offset; }
+
+    /**
+     * Largest non-negative combination r * l + s * w that does not exceed L
+     */
+    public static int largest_combination(int L, int l, int w) {
+        int best = 0;
+        for (int r = 0; r * l <= L; r++) {
+            int value = r * l + ((L - r * l) / w) * w;
+            if (value > best) best = value;
+            if (best == L) break;
+        }
+        return best;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * Whether the canonical form swaps the pallet sides
+     */
+    private boolean transposed() {
+        return W0 > L0;
+    }
+
+    /**
+     * Factor every side is divided by in the canonical form
+     */
+    private int scale() {
+        return gcd(l0, w0);
+    }
+
+    /**
+     * Canonical representative: pallet and box sides sorted descending, pallet sides reduced
+     * to the largest usable combination of box sides and everything divided by gcd(l0, w0)
+     */
+    public PalletInstance canonical() {
+        int l = Math.max(l0, w0), w = Math.min(l0, w0);
+        int L = Math.max(L0, W0), W = Math.min(L0, W0);
+        int g = scale();
+        return new PalletInstance(
+                largest_combination(L, l, w) / g,
+                largest_combination(W, l, w) / g,
+                N0, l / g, w / g);
+    }
+
+    /**
+     * Map a solution of {@link #canonical()} back onto this instance
+     */
+    public RecursiveBDModule.Result from_canonical(RecursiveBDModule.Result canonical) {
+        BlockList source = canonical.getBlockList();
+        BlockList blocks = new BlockList(source.size());
+        int g = scale();
+        boolean transposed = transposed();
+        for (int i = 0; i < source.size(); i++) {
+            int x = source.getX(i) * g, y = source.getY(i) * g;
+            int L = source.getL(i) * g, W = source.getW(i) * g;
+            if (transposed) blocks.add(y + x_offset, x + y_offset, W, L);
+            else blocks.add(x + x_offset, y + y_offset, L, W);
+        }
+        return new RecursiveBDModule.Result(canonical.getCount(), blocks,
+                canonical.isProvenOptimal(), canonical.isStopped(), l0, w0, canonical.getStats());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PalletInstance that)) return false;
+        return L0 == that.L0 && W0 == that.W0 && N0 == that.N0 && l0 == that.l0 && w0 == that.w0
+                && x_offset == that.x_offset && y_offset == that.y_offset;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(L0, W0, N0, l0, w0, x_offset, y_offset);
+    }
+
+    @Override
+    public String toString() {
+        return L0 + "x" + W0 + "/" + l0 + "x" + w0 + " N0=" + N0;
+    }
+}
@@ -0,0 +1,33 @@
+package packing.algorithm;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An algorithm for the manufacturer's pallet loading problem.
+ * <p>
+ * {@code shared} holds the best count any cooperating engine has reached so far. An
+ * engine may skip work that cannot beat it, even if that leaves its own result below
+ * the shared count, but must not write to it; whoever runs the engines does that from
+ * their incumbent listeners.
+ */
+public interface PalletSolver {
+
+    /**
+     * Short name for logs and reports
+     */
+    String name();
+
+    /**
+     * Solve an instance, reporting improved layouts as they are found. The layout is
+     * placed at the instance's offsets.
+     */
+    RecursiveBDModule.Result solve(PalletInstance instance, SolveControl control,
+                                   AtomicInteger shared, IncumbentListener listener);
+
+    /**
+     * Solve an instance on its own, without a deadline
+     */
+    default RecursiveBDModule.Result solve(PalletInstance instance) {
+        return solve(instance, new SolveControl(), new AtomicInteger(), null);
+    }
+}
@@ -0,0 +1,217 @@
+package packing.algorithm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy view of the individual box placements of a layout.
+ * <p>
+ * A layout is kept as its homogeneous blocks, each filled with boxes in one orientation.
+ * Placements are generated on demand from the blocks, so a layout of tens of thousands of
+ * boxes never exists as one object per box unless a caller asks for that. Placements are
+ * numbered block by block and, inside a block, column by column.
+ */
+public class Placements implements Iterable<RecursiveBDModule.Tuple4<Integer, Integer, Integer, Integer>> {
+    /**
+     * Bytes per placement in the binary format: x, y, l and w as 32-bit ints
+     */
+    public static final int RECORD_BYTES = 16;
+
+    private final BlockList blocks;
+    private final int l;
+    private final int w;
+    private final boolean[] rotated;  // rotated[b]: block b holds boxes as w x l
+    private final int[] first;        // first[b]: number of the first placement in block b
+
+    /**
+     * Callback receiving one placement without boxing
+     */
+    @FunctionalInterface
+    public interface PlacementConsumer {
+        void accept(int x, int y, int l, int w);
+    }
+
+    // Constructor
+    public Placements(BlockList blocks, int l, int w) {
+        if (l <= 0 || w <= 0)
+            throw new IllegalArgumentException("box sides must be positive: " + l + "x" + w);
+        this.blocks = blocks;
+        this.l = l;
+        this.w = w;
+        this.rotated = new boolean[blocks.size()];
+        this.first = new int[blocks.size() + 1];
+
+        // Decide the orientation of every block once, the same way pack_blocks does
+        for (int b = 0; b < blocks.size(); b++) {
+            int Li = blocks.getL(b), Wi = blocks.getW(b);
+            int along = (Li / l) * (Wi / w);
+            int across = (Li / w) * (Wi / l);
+            rotated[b] = along < across;
+            first[b + 1] = first[b] + Math.max(along, across);
+        }
+    }
+
+    /**
+     * Total number of placed boxes
+     */
+    public int size() {
+        return first[blocks.size()];
+    }
+
+    public BlockList getBlocks() { return blocks; }
+    public int getBoxL() { return l; }
+    public int getBoxW() { return w; }
+
+    /**
+     * Whether the boxes of block b are placed as w x l
+     */
+    public boolean isRotated(int b) {
+        return rotated[b];
+    }
+
+    /**
+     * Hand every placement to the consumer, in order and without allocating
+     */
+    public void forEach(PlacementConsumer action) {
+        for (int b = 0; b < blocks.size(); b++) {
+            int bl = rotated[b] ? w : l, bw = rotated[b] ? l : w;
+            int x0 = blocks.getX(b), y0 = blocks.getY(b);
+            int columns = blocks.getL(b) / bl, rows = blocks.getW(b) / bw;
+            for (int i = 0; i < columns; ++i) {
+                for (int j = 0; j < rows; ++j) {
+                    action.accept(x0 + i * bl, y0 + j * bw, bl, bw);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Iterator<RecursiveBDModule.Tuple4<Integer, Integer, Integer, Integer>> iterator() {
+        return Spliterators.iterator(spliterator());
+    }
+
+    @Override
+    public Spliterator<RecursiveBDModule.Tuple4<Integer, Integer, Integer, Integer>> spliterator() {
+        return new PlacementSpliterator(0, size());
+    }
+
+    public Stream<RecursiveBDModule.Tuple4<Integer, Integer, Integer, Integer>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Write placements starting at number {@code from} into the buffer, in the buffer's
+     * byte order, until the buffer has no room for another record.
+     *
+     * @return the number of the first placement not written; equals {@link #size()} once
+     * every placement is out
+     */
+    public int writeTo(ByteBuffer buffer, int from) {
+        Cursor cursor = new Cursor(from, size());
+        while (cursor.index < cursor.end && buffer.remaining() >= RECORD_BYTES) {
+            buffer.putInt(cursor.x()).putInt(cursor.y()).putInt(cursor.box_l()).putInt(cursor.box_w());
+            cursor.advance();
+        }
+        return cursor.index;
+    }
+
+    /**
+     * Stream every placement to the channel through the given buffer, which is reused
+     * for each chunk, and return the number of bytes written
+     */
+    public long writeTo(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < RECORD_BYTES)
+            throw new IllegalArgumentException("buffer holds less than one placement: " + buffer.capacity());
+        long written = 0;
+        int next = 0;
+        while (next < size()) {
+            buffer.clear();
+            next = writeTo(buffer, next);
+            buffer.flip();
+            while (buffer.hasRemaining()) written += channel.write(buffer);
+        }
+        return written;
+    }
+
+    /**
+     * Position in the placement order, walking blocks, columns and rows
+     */
+    private class Cursor {
+        int index, end;
+        int block, i, j;
+
+        Cursor(int from, int end) {
+            this.end = end;
+            seek(from);
+        }
+
+        void seek(int k) {
+            index = k;
+            if (k >= end) return;
+            // Last block whose first placement is at or before k
+            int b = Arrays.binarySearch(first, 0, blocks.size(), k);
+            if (b < 0) b = -b - 2;
+            while (first[b + 1] == first[b]) b++;  // skip empty blocks that share the position
+            block = b;
+            int rows = blocks.getW(b) / box_w();
+            i = (k - first[b]) / rows;
+            j = (k - first[b]) % rows;
+        }
+
+        void advance() {
+            index++;
+            if (index >= end) return;
+            if (++j < blocks.getW(block) / box_w()) return;
+            j = 0;
+            if (++i < blocks.getL(block) / box_l()) return;
+            i = 0;
+            do block++; while (first[block + 1] == first[block]);
+        }
+
+        int box_l() { return rotated[block] ? w : l; }
+        int box_w() { return rotated[block] ? l : w; }
+        int x() { return blocks.getX(block) + i * box_l(); }
+        int y() { return blocks.getY(block) + j * box_w(); }
+    }
+
+    private class PlacementSpliterator
+            implements Spliterator<RecursiveBDModule.Tuple4<Integer, Integer, Integer, Integer>> {
+        private final Cursor cursor;
+
+        PlacementSpliterator(int from, int end) {
+            this.cursor = new Cursor(from, end);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super RecursiveBDModule.Tuple4<Integer, Integer, Integer, Integer>> action) {
+            if (cursor.index >= cursor.end) return false;
+            action.accept(new RecursiveBDModule.Tuple4<>(cursor.x(), cursor.y(), cursor.box_l(), cursor.box_w()));
+            cursor.advance();
+            return true;
+        }
+
+        @Override
+        public Spliterator<RecursiveBDModule.Tuple4<Integer, Integer, Integer, Integer>> trySplit() {
+            int from = cursor.index, mid = (from + cursor.end) >>> 1;
+            if (mid - from < 1024) return null;
+            PlacementSpliterator prefix = new PlacementSpliterator(from, mid);
+            cursor.seek(mid);
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return cursor.end - cursor.index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+}
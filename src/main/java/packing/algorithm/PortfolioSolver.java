@@ -0,0 +1,125 @@
+package packing.algorithm;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Races several engines on the same instance and keeps the best layout.
+ * <p>
+ * All engines share one best count to prune against. As soon as any engine reaches the
+ * instance's upper bound the others are cancelled, so the portfolio is about as fast as
+ * its fastest engine on every instance shape. The shared count is the portfolio's own;
+ * the caller's is only read, as the {@link PalletSolver} contract asks.
+ */
+public class PortfolioSolver implements PalletSolver {
+    private static final Executor THREAD_PER_ENGINE = task -> {
+        Thread thread = new Thread(task, "portfolio-engine");
+        thread.setDaemon(true);
+        thread.start();
+    };
+
+    private final Supplier<List<PalletSolver>> engines;
+    private final BoundProvider bound_provider;
+    private final Executor executor;
+
+    /**
+     * Portfolio that races a fresh set of engines on every call, so concurrent calls
+     * never wait for each other's engines
+     */
+    public PortfolioSolver(Supplier<List<PalletSolver>> engines, BoundProvider boundProvider, Executor executor) {
+        this.engines = engines;
+        this.bound_provider = boundProvider;
+        this.executor = executor;
+    }
+
+    /**
+     * Portfolio that races the same engines on every call; concurrent calls queue on
+     * engines that solve one instance at a time
+     */
+    public PortfolioSolver(List<PalletSolver> engines, BoundProvider boundProvider, Executor executor) {
+        this(fixed(engines), boundProvider, executor);
+    }
+
+    /**
+     * Portfolio running every engine on a thread of its own
+     */
+    public PortfolioSolver(List<PalletSolver> engines) {
+        this(engines, BoundProvider.DEFAULT, THREAD_PER_ENGINE);
+    }
+
+    /**
+     * Five-block search on a sequential solver raced against the guillotine solver, both
+     * created for every call
+     */
+    public PortfolioSolver() {
+        this(() -> List.of(new RecursiveBDModule(null), new GuillotineSolver()),
+                BoundProvider.DEFAULT, THREAD_PER_ENGINE);
+    }
+
+    private static Supplier<List<PalletSolver>> fixed(List<PalletSolver> engines) {
+        if (engines.isEmpty()) throw new IllegalArgumentException("portfolio needs an engine");
+        List<PalletSolver> copy = List.copyOf(engines);
+        return () -> copy;
+    }
+
+    /**
+     * Engines the next call races
+     */
+    public List<PalletSolver> getEngines() { return engines.get(); }
+
+    @Override
+    public String name() {
+        return "portfolio";
+    }
+
+    @Override
+    public RecursiveBDModule.Result solve(PalletInstance instance, SolveControl control,
+                                          AtomicInteger shared, IncumbentListener listener) {
+        int bound = bound_provider.upper_bound(instance.getL0(), instance.getW0(),
+                instance.getBoxL(), instance.getBoxW());
+        List<PalletSolver> racing = engines.get();
+        if (racing.isEmpty()) throw new IllegalArgumentException("portfolio needs an engine");
+        SolveControl race = control.child();
+
+        // Engines prune against the race's best count, which starts at the caller's
+        AtomicInteger best_count = new AtomicInteger(shared.get());
+
+        // Every engine's incumbents raise the race's count and stop the race at the bound
+        IncumbentListener improved = new IncumbentListener() {
+            private int reported = 0;
+
+            @Override
+            public synchronized void onIncumbent(RecursiveBDModule.Result incumbent) {
+                best_count.accumulateAndGet(incumbent.getCount(), Math::max);
+                if (incumbent.getCount() >= bound) race.cancel();
+                if (incumbent.getCount() > reported) {
+                    reported = incumbent.getCount();
+                    if (listener != null) listener.onIncumbent(incumbent);
+                }
+            }
+        };
+
+        List<CompletableFuture<RecursiveBDModule.Result>> runs = new ArrayList<>(racing.size());
+        for (PalletSolver engine : racing) {
+            runs.add(CompletableFuture.supplyAsync(() -> {
+                RecursiveBDModule.Result result = engine.solve(instance, race, best_count, improved);
+                if (result.getCount() > 0) improved.onIncumbent(result);
+                return result;
+            }, executor));
+        }
+
+        RecursiveBDModule.Result best = null;
+        for (CompletableFuture<RecursiveBDModule.Result> run : runs) {
+            RecursiveBDModule.Result result = run.join();
+            if (best == null || result.getCount() > best.getCount()) best = result;
+        }
+
+        // Losers cancelled by the race do not make the portfolio's answer incomplete
+        boolean optimal = best.getCount() >= bound;
+        return new RecursiveBDModule.Result(best.getCount(), best.getBlockList(), optimal,
+                !optimal && control.isStopped(), instance.getBoxL(), instance.getBoxW());
+    }
+}
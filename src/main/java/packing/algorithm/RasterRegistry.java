@@ -0,0 +1,113 @@
+package packing.algorithm;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Raster point tables shared by every solve with the same carton.
+ * <p>
+ * The raster points of an (l, w) carton do not depend on the pallet, so one table per
+ * carton serves every pallet up to the largest one seen so far. A bigger pallet grows the
+ * table by extending the old points instead of recomputing them. Tables are immutable;
+ * growing one publishes a new table, so lookups read them without locking.
+ */
+public class RasterRegistry {
+    private static final RasterRegistry SHARED = new RasterRegistry();
+
+    private final Map<Long, Raster> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Registry used by solvers by default
+     */
+    public static RasterRegistry shared() {
+        return SHARED;
+    }
+
+    /**
+     * Generator for an L x W pallet and l x w cartons, backed by the carton's shared table
+     */
+    public XYGenerator generator(int L, int W, int l, int w) {
+        if (l <= 0 || w <= 0)
+            throw new IllegalArgumentException("box sides must be positive: " + l + "x" + w);
+        int limit = Math.max(L, W);
+        long key = ((long) Math.min(l, w) << 32) | Math.max(l, w);
+
+        Raster raster = tables.get(key);
+        if (raster == null || raster.limit < limit) {
+            raster = tables.compute(key, (k, old) -> {
+                if (old == null) return Raster.build(l, w, limit);
+                if (old.limit >= limit) return old;
+                // Grow geometrically so sweeps over pallet sizes rebuild rarely
+                return old.grow(Math.max(limit, old.limit + old.limit / 2));
+            });
+        }
+        return new XYGenerator(L, W, l, w, raster);
+    }
+
+    /**
+     * Number of cartons with a table
+     */
+    public int size() {
+        return tables.size();
+    }
+
+    /**
+     * Largest coordinate covered for a carton, or -1 if it has no table yet
+     */
+    public int limit(int l, int w) {
+        Raster raster = tables.get(((long) Math.min(l, w) << 32) | Math.max(l, w));
+        return raster == null ? -1 : raster.limit;
+    }
+
+    public void clear() {
+        tables.clear();
+    }
+
+    /**
+     * Sorted raster points of one carton up to a limit, with their prefix counts
+     */
+    static final class Raster {
+        final int l, w, limit;
+        final int[] points;
+        final int[] counts;  // counts[c] = number of points that are <= c
+
+        private Raster(int l, int w, int limit, int[] points, int[] counts) {
+            this.l = l;
+            this.w = w;
+            this.limit = limit;
+            this.points = points;
+            this.counts = counts;
+        }
+
+        static Raster build(int l, int w, int limit) {
+            return new Raster(l, w, -1, new int[0], new int[0]).grow(limit);
+        }
+
+        /**
+         * Table up to a larger limit, reusing the points up to the current one
+         */
+        Raster grow(int limit) {
+            if (limit < this.limit) throw new IllegalArgumentException("cannot shrink to " + limit);
+            int from = this.limit + 1;
+
+            // c is a combination r * l + s * w iff c = 0 or c - l or c - w is one, so one
+            // pass in linear time marks (this.limit, limit]; the old points seed the pass
+            boolean[] marks = new boolean[limit + 1];
+            for (int point : points) marks[point] = true;
+            int added = 0;
+            for (int c = from; c <= limit; c++) {
+                marks[c] = c == 0 || c >= l && marks[c - l] || c >= w && marks[c - w];
+                if (marks[c]) added++;
+            }
+
+            int size = points.length;
+            int[] grown_points = Arrays.copyOf(points, size + added);
+            int[] grown_counts = Arrays.copyOf(counts, limit + 1);
+            for (int c = from; c <= limit; c++) {
+                if (marks[c]) grown_points[size++] = c;
+                grown_counts[c] = size;
+            }
+            return new Raster(l, w, limit, grown_points, grown_counts);
+        }
+    }
+}
@@ -1,10 +1,103 @@
 package packing.algorithm;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import jdk.jfr.FlightRecorder;
 
-public class RecursiveBDModule {
-    private static XYGenerator xy_gen = null;
-    private static int N, l, w;
+/**
+ * Block decomposition solver for the manufacturer's pallet loading problem.
+ * <p>
+ * Each instance owns the state of the solve it is running, so separate instances can
+ * solve concurrently. A single instance serializes its own {@code palletLoading} calls.
+ */
+public class RecursiveBDModule implements PalletSolver {
+    private final ForkJoinPool pool;
+    private BoundProvider bound_provider = BoundProvider.DEFAULT;
+    private XYGenerator xy_gen = null;
+    private BoundTable bounds = null;
+    private SubproblemCache cache = null;
+    private final SubproblemCache own_cache = new SubproblemCache();  // kept warm across calls
+    private long cache_hits, cache_misses;  // cache counters when the current solve started
+    private SolveControl control = null;
+    private IncumbentListener listener = null;
+    private boolean collect_stats = false;
+    private boolean validate_results = false;
+    private SolutionStore solution_store = null;
+    private SolveStats stats = null;
+    private Result root_seed = null;  // warm-start layout for the root, relative to its origin
+    private AtomicInteger external = null;  // best count of cooperating engines
+    private int N, l, w, root_depth, root_x_offset, root_y_offset;
+
+    /**
+     * Create a solver that splits the top-level cut search over the common pool
+     */
+    public RecursiveBDModule() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a solver that splits the top-level cut search over the given pool,
+     * or searches sequentially when the pool is null
+     */
+    public RecursiveBDModule(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Pool the top-level cut search is split over, or null for a sequential solver
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Upper bound used for the early exit and for pruning sub-blocks in later solves
+     */
+    public synchronized void setBoundProvider(BoundProvider boundProvider) {
+        this.bound_provider = boundProvider;
+    }
+
+    public synchronized BoundProvider getBoundProvider() {
+        return bound_provider;
+    }
+
+    /**
+     * Attach {@link SolveStats} to the results of later solves
+     */
+    public synchronized void setCollectStats(boolean collectStats) {
+        this.collect_stats = collectStats;
+    }
+
+    public synchronized boolean isCollectStats() {
+        return collect_stats;
+    }
+
+    /**
+     * Persistent store consulted before, and filled after, every complete solve; null disables it
+     */
+    public synchronized void setSolutionStore(SolutionStore solutionStore) {
+        this.solution_store = solutionStore;
+    }
+
+    public synchronized SolutionStore getSolutionStore() {
+        return solution_store;
+    }
+
+    /**
+     * Check every layout returned by later solves with {@link LayoutValidator}, failing with
+     * an {@link IllegalStateException} on an infeasible one
+     */
+    public synchronized void setValidateResults(boolean validateResults) {
+        this.validate_results = validateResults;
+    }
+
+    public synchronized boolean isValidateResults() {
+        return validate_results;
+    }
 
     /**
      * A class to represent a 4-tuple of integers
@@ -33,15 +126,84 @@ public class RecursiveBDModule {
      */
     public static class Result {
         private final int count;
-        private final List<Tuple4<Integer, Integer, Integer, Integer>> blocks;
+        private final BlockList blockList;
+        private final boolean provenOptimal;
+        private final boolean stopped;
+        private final int box_l;
+        private final int box_w;
+        private final SolveStats stats;
+        private volatile List<Tuple4<Integer, Integer, Integer, Integer>> blocks;
 
         public Result(int count, List<Tuple4<Integer, Integer, Integer, Integer>> blocks) {
-            this.count = count;
+            this(count, BlockList.of(blocks));
             this.blocks = blocks;
         }
 
+        public Result(int count, BlockList blockList) {
+            this(count, blockList, false, false);
+        }
+
+        public Result(int count, BlockList blockList, boolean provenOptimal, boolean stopped) {
+            this(count, blockList, provenOptimal, stopped, 0, 0);
+        }
+
+        /**
+         * Result that also knows its box size, so its placements can be generated
+         */
+        public Result(int count, BlockList blockList, boolean provenOptimal, boolean stopped,
+                      int box_l, int box_w) {
+            this(count, blockList, provenOptimal, stopped, box_l, box_w, null);
+        }
+
+        public Result(int count, BlockList blockList, boolean provenOptimal, boolean stopped,
+                      int box_l, int box_w, SolveStats stats) {
+            this.count = count;
+            this.blockList = blockList;
+            this.provenOptimal = provenOptimal;
+            this.stopped = stopped;
+            this.box_l = box_l;
+            this.box_w = box_w;
+            this.stats = stats;
+        }
+
         public int getCount() { return count; }
-        public List<Tuple4<Integer, Integer, Integer, Integer>> getBlocks() { return blocks; }
+        public BlockList getBlockList() { return blockList; }
+
+        /**
+         * Whether the count matches an upper bound, so no better layout exists
+         */
+        public boolean isProvenOptimal() { return provenOptimal; }
+
+        /**
+         * Whether the solve was cancelled or ran out of time before finishing its search
+         */
+        public boolean isStopped() { return stopped; }
+
+        /**
+         * Search counters of the solve, or null when they were not collected
+         */
+        public SolveStats getStats() { return stats; }
+
+        /**
+         * Boxed view of the blocks, built on first use
+         */
+        public List<Tuple4<Integer, Integer, Integer, Integer>> getBlocks() {
+            List<Tuple4<Integer, Integer, Integer, Integer>> result = blocks;
+            if (result == null) {
+                result = blockList.toTuples();
+                blocks = result;
+            }
+            return result;
+        }
+
+        /**
+         * Lazy view of the individual boxes of the layout
+         */
+        public Placements getPlacements() {
+            if (box_l <= 0 || box_w <= 0)
+                throw new IllegalStateException("result does not record its box size");
+            return new Placements(blockList, box_l, box_w);
+        }
     }
 
     /**
@@ -58,47 +220,38 @@ public class RecursiveBDModule {
         return (L * W) / (l * w);
     }
 
+    /**
+     * Upper bound of box placements from the pallet reduced to its raster points
+     */
+    public static int upper_bound(int L, int W, int l, int w) {
+        int L_star = PalletInstance.largest_combination(L, l, w);
+        int W_star = PalletInstance.largest_combination(W, l, w);
+        return (L_star * W_star) / (l * w);
+    }
+
     /**
      * Pack blocks into the area
      */
     public static List<Tuple4<Integer, Integer, Integer, Integer>> pack_blocks(
             int L0, int W0, int l, int w,
             List<Tuple4<Integer, Integer, Integer, Integer>> blocks) {
+        return pack_blocks(L0, W0, l, w, BlockList.of(blocks)).toTuples();
+    }
 
-        List<Tuple4<Integer, Integer, Integer, Integer>> packing = new ArrayList<>();
-
-        for (Tuple4<Integer, Integer, Integer, Integer> block : blocks) {
-            int x_offset_i = block.getFirst();
-            int y_offset_i = block.getSecond();
-            int Li = block.getThird();
-            int Wi = block.getFourth();
-
-            // Decide orientation
-            if ((Li / l) * (Wi / w) < (Li / w) * (Wi / l)) {
-                int temp = l;
-                l = w;
-                w = temp;
-            }
-
-            // Pack within the block
-            for (int i = 0; i < Li / l; ++i) {
-                for (int j = 0; j < Wi / w; ++j) {
-                    packing.add(new Tuple4<>(
-                            i * l + x_offset_i,
-                            j * w + y_offset_i,
-                            l, w
-                    ));
-                }
-            }
-        }
-
+    /**
+     * Pack blocks into the area, one (x, y, l, w) entry per box
+     */
+    public static BlockList pack_blocks(int L0, int W0, int l, int w, BlockList blocks) {
+        Placements placements = new Placements(blocks, l, w);
+        BlockList packing = new BlockList(placements.size());
+        placements.forEach(packing::add);
         return packing;
     }
 
     /**
-     * Sum a list of integers
+     * Sum an array of integers
      */
-    public static int sum_vector(List<Integer> vec) {
+    public static int sum_vector(int[] vec) {
         int sum = 0;
         for (int value : vec) {
             sum += value;
@@ -139,139 +292,757 @@ public class RecursiveBDModule {
         return true; // Symmetrical, discard
     }
 
+    /**
+     * Cuts (x1, x2, y1, y2) with y2 > y1 are not symmetrical exactly for y2 up to the
+     * returned limit; y1 if all of them are
+     */
+    static int open_limit(int L0, int W0, int x1, int x2, int y1) {
+        int limit = y1;
+        if (x1 > 0 && y1 > 0 && x2 > x1) {
+            if (x1 + x2 < L0) return Integer.MAX_VALUE;
+            if (x1 + x2 == L0) limit = Math.max(limit, W0 - y1);
+        }
+        if (x1 > 0 && y1 > 0 && x2 == x1 && x1 <= L0 / 2) return Integer.MAX_VALUE;
+        if (x1 > 0 && y1 == 0 && x2 == x1) limit = Math.max(limit, W0 / 2);
+        if (x1 == 0 && y1 > 0 && y1 <= W0 / 2 && x2 == 0) return Integer.MAX_VALUE;
+        return limit;
+    }
+
+    /**
+     * Per-depth scratch space reused by every node searched at that depth
+     */
+    private static class Frame {
+        private final int[] cut = new int[20];  // the five candidate blocks, (x, y, L, W) each
+        private final int[] zi = new int[5];
+        private final CutQueue queue = new CutQueue();
+        private CutSignatures seen = new CutSignatures();  // cuts of the node tried so far
+        private BlockList temp = new BlockList();
+        private BlockList best = new BlockList();
+        private long nodes, dominated, evaluated, eval_pruned, early_exits, nanos;  // statistics
+
+        /**
+         * Keep the blocks of the cut just evaluated as the node's best
+         */
+        private void keep_best(boolean at_max_depth) {
+            if (at_max_depth) {
+                best.clear();
+                best.addAll(cut, 5, 0, 0);
+            } else {
+                BlockList swap = best;
+                best = temp;
+                temp = swap;
+            }
+        }
+
+        /**
+         * Copy of the blocks of the cut just evaluated
+         */
+        private BlockList copy_candidate(boolean at_max_depth) {
+            if (!at_max_depth) return temp.copy();
+            BlockList blocks = new BlockList(5);
+            blocks.addAll(cut, 5, 0, 0);
+            return blocks;
+        }
+    }
+
+    /**
+     * Scratch frames for one sequential walk of the search tree
+     */
+    private Frame[] new_frames() {
+        Frame[] frames = new Frame[Math.max(N, root_depth) + 1];
+        for (int i = 0; i < frames.length; i++) frames[i] = new Frame();
+        return frames;
+    }
+
+    /**
+     * Add the counters of a finished walk to the solve's statistics
+     */
+    private void merge_stats(Frame[] frames) {
+        if (stats == null) return;
+        for (int depth = root_depth; depth < frames.length; depth++) {
+            Frame frame = frames[depth];
+            stats.add(depth, frame.nodes, frame.queue.candidates, frame.queue.symmetric,
+                    frame.dominated, frame.evaluated, frame.eval_pruned, frame.early_exits, frame.nanos);
+        }
+    }
+
     /**
      * Recursive implementation of the B&D heuristic
      */
-    public static Result recursive_block_decomposition(
+    public Result recursive_block_decomposition(
             int L0, int W0, int n,
             int x_offset, int y_offset) {
+        BlockList blocks = new BlockList();
+        Frame[] frames = new_frames();
+        int count = solve_block(L0, W0, n, x_offset, y_offset, blocks, frames);
+        merge_stats(frames);
+        return new Result(count, blocks);
+    }
+
+    /**
+     * Solve a sub-rectangle and append its blocks, shifted by the offsets, to out
+     */
+    private int solve_block(
+            int L0, int W0, int n,
+            int x_offset, int y_offset,
+            BlockList out, Frame[] frames) {
+
+        // A rectangle packs like its sides reduced to raster points and like its transpose,
+        // so every size is solved in one normal form, turned the pallet's way
+        boolean transposed = xy_gen.transposes(L0, W0);
+        int L = xy_gen.reduce(transposed ? W0 : L0);
+        int W = xy_gen.reduce(transposed ? L0 : W0);
+
+        // Subproblems only depend on their size and remaining depth, so solve them at
+        // the origin once and re-offset the cached layout on every later visit; below the
+        // last level every node is solved like a leaf
+        long key = SubproblemCache.key(L, W, Math.max(0, N - n));
+        Result cached = cache.get(key);
+        if (cached == null) {
+            long start = stats == null ? 0 : System.nanoTime();
+            cached = decompose(L, W, n, frames);
+            if (stats != null) frames[n].nanos += System.nanoTime() - start;
+
+            // A stopped search may have skipped cuts, and a root pruned against other engines
+            // or started from a warm-start layout is not the plain result, so neither is reusable
+            boolean exact = n != root_depth || (external == null && root_seed == null);
+            if (!control.isStopped() && exact) cache.put(key, cached);
+        } else if (n == root_depth && cached.getCount() > 0) {
+            // Solved by an earlier call; the listener still sees the layout
+            BlockList placed = new BlockList(cached.getBlockList().size());
+            if (transposed) placed.addAllTransposed(cached.getBlockList(), 0, 0);
+            else placed.addAll(cached.getBlockList(), 0, 0);
+            report_incumbent(cached.getCount(), placed);
+        }
+        if (transposed) out.addAllTransposed(cached.getBlockList(), x_offset, y_offset);
+        else out.addAll(cached.getBlockList(), x_offset, y_offset);
+        return cached.getCount();
+    }
+
+    /**
+     * Search all five-block cuts of a single (L0, W0) rectangle placed at the origin
+     */
+    private Result decompose(int L0, int W0, int n, Frame[] frames) {
+        Frame frame = frames[n];
+        frame.nodes++;
 
         // Compute lower and upper bounds
         int zlb = compute_zlb(L0, W0, l, w);
-        int zub = xy_gen.get_zub(L0, W0);
+        int zub = bounds.get(L0, W0);
+        BlockList initial = BlockList.of(0, 0, L0, W0);
+
+        // The homogeneous block, or a better warm-start layout, is the first top-level incumbent
+        if (n == root_depth) {
+            if (root_seed != null && root_seed.getCount() > zlb) {
+                zlb = root_seed.getCount();
+                initial = root_seed.getBlockList();
+            }
+            if (zlb > 0) report_incumbent(zlb, initial);
+        }
 
         // Base cases
-        if (zlb == 0) return new Result(zlb, new ArrayList<>());
+        if (zlb == 0) return new Result(zlb, new BlockList(0));
         if (zlb == zub) {
-            List<Tuple4<Integer, Integer, Integer, Integer>> blocks = new ArrayList<>();
-            blocks.add(new Tuple4<>(x_offset, y_offset, L0, W0));
-            return new Result(zlb, blocks);
-        }
-
-        // Initial best blocks
-        List<Tuple4<Integer, Integer, Integer, Integer>> best_blocks = new ArrayList<>();
-        best_blocks.add(new Tuple4<>(x_offset, y_offset, L0, W0));
-
-        XYGenerator.Pair<List<Integer>, List<Integer>> xyPair = xy_gen.get_XY(L0, W0);
-        List<Integer> X = xyPair.getFirst();
-        List<Integer> Y = xyPair.getSecond();
-
-        // Try different block divisions
-        for (int x1 : X) {
-            for (int x2 : X) {
-                if (x1 > x2) continue;
-                for (int y1 : Y) {
-                    for (int y2 : Y) {
-                        if (y1 > y2) continue;
-
-                        // Reduce the search by discarding symmetrical patterns
-                        if (isSymmetrical(L0, W0, x1, x2, y1, y2))
-                            continue;
-
-                        // Define sub-blocks
-                        int L1 = x1, W1 = W0 - y1;
-                        int L2 = L0 - x1, W2 = W0 - y2;
-                        int L3 = x2 - x1, W3 = y2 - y1;
-                        int L4 = x2, W4 = y1;
-                        int L5 = L0 - x2, W5 = y2;
-
-                        // Create block list
-                        List<Tuple4<Integer, Integer, Integer, Integer>> blocks = new ArrayList<>();
-                        blocks.add(new Tuple4<>(x_offset, W4 + y_offset, L1, W1));
-                        blocks.add(new Tuple4<>(L1 + x_offset, W3 + W4 + y_offset, L2, W2));
-                        blocks.add(new Tuple4<>(L1 + x_offset, W4 + y_offset, L3, W3));
-                        blocks.add(new Tuple4<>(x_offset, y_offset, L4, W4));
-                        blocks.add(new Tuple4<>(L1 + L3 + x_offset, y_offset, L5, W5));
-
-                        int z_0 = 0;
-                        List<Tuple4<Integer, Integer, Integer, Integer>> temp_blocks = new ArrayList<>();
-                        List<Integer> zi = new ArrayList<>();
-
-                        // Recursive exploration
-                        for (Tuple4<Integer, Integer, Integer, Integer> block : blocks) {
-                            int Li = block.getThird();
-                            int Wi = block.getFourth();
-                            zi.add(compute_zub(Li, Wi, l, w)); // z_i are now all z_ub_i
-                        }
-
-                        if (n < N) {
-                            z_0 = sum_vector(zi);
-                            for (int i = 0; i < 5; i++) {
-                                if (zlb >= z_0) {
-                                    break;
-                                } else {
-                                    Tuple4<Integer, Integer, Integer, Integer> block = blocks.get(i);
-                                    int x_offset_i = block.getFirst();
-                                    int y_offset_i = block.getSecond();
-                                    int Li = block.getThird();
-                                    int Wi = block.getFourth();
-
-                                    Result recursiveResult = recursive_block_decomposition(
-                                            Li, Wi, n + 1, x_offset_i, y_offset_i
-                                    );
-
-                                    temp_blocks.addAll(recursiveResult.getBlocks());
-                                    zi.set(i, recursiveResult.getCount());
-                                    z_0 = sum_vector(zi);
-                                }
-                            }
-                        } else {
-                            // At max recursion, compute lower bounds
-                            for (Tuple4<Integer, Integer, Integer, Integer> block : blocks) {
-                                int Li = block.getThird();
-                                int Wi = block.getFourth();
-                                z_0 += compute_zlb(Li, Wi, l, w);
-                            }
-                        }
-
-                        // Update best solution
-                        if (z_0 > zlb) {
-                            zlb = z_0;
-                            best_blocks = (n == N) ? blocks : temp_blocks;
-
-                            // Early exit if upper bound reached
-                            if (zlb == zub) return new Result(zlb, best_blocks);
-                        }
+            frame.early_exits++;
+            return new Result(zlb, initial);
+        }
+
+        int[] X = xy_gen.get_X();
+        int[] Y = xy_gen.get_Y();
+        int nx = xy_gen.get_X_length(L0, W0);
+        int ny = xy_gen.get_Y_length(L0, W0);
+
+        // Split the top-level cut search across the pool
+        if (pool != null && n == root_depth) {
+            ParallelSearch search = new ParallelSearch(L0, W0, n, X, nx, Y, ny, zub,
+                    new Result(zlb, initial));
+            search.run(frame);
+            return search.best;
+        }
+
+        CutQueue queue = frame.queue;
+        boolean improved = false;  // until then the initial layout is the best one
+
+        // Try different block divisions one window at a time, in raster order first and
+        // then best bound first, unless the cuts are only scored by lower bounds
+        queue.start(n < N);
+        frame.seen.clear();
+        search:
+        while (zlb < zub && !control.poll()) {
+            int size = queue.fill(L0, W0, X, nx, Y, ny, bounds, Math.max(zlb, root_floor(n)), zub, control);
+            for (int k = 0; k < size; k++) {
+                if (queue.bound(k) <= Math.max(zlb, root_floor(n))) {
+                    // In a sorted window no later cut can beat the incumbent either
+                    if (queue.sorted()) break;
+                    continue;
+                }
+                if (control.isStopped()) break search;
+
+                int x1 = X[queue.x1_index(k)], x2 = X[queue.x2_index(k)];
+                int y1 = Y[queue.y1_index(k)], y2 = Y[queue.y2_index(k)];
+                int z_0 = evaluate_cut(L0, W0, n, x1, x2, y1, y2, zlb, null, frames);
+
+                // Update best solution
+                if (z_0 > zlb) {
+                    zlb = z_0;
+                    frame.keep_best(n == N);
+                    improved = true;
+                    if (n == root_depth) report_incumbent(zlb, frame.best);
+
+                    // Early exit if upper bound reached
+                    if (zlb == zub) {
+                        frame.early_exits++;
+                        break search;
                     }
                 }
             }
+            if (size == 0) break;
         }
 
-        return new Result(zlb, best_blocks);
+        return new Result(zlb, improved ? frame.best.copy() : initial);
     }
 
     /**
-     * Main pallet loading function
+     * Evaluate a single (x1, x2, y1, y2) cut of a rectangle at the origin and return its count.
+     * <p>
+     * The cut's blocks are left in the frame for depth n; the count is only exact when it
+     * beats the incumbent, which is {@code zlb} or, when given, the shared counter.
+     * A cut interrupted by a stop request, or equivalent to one tried before at this
+     * node, is abandoned and reported as -1.
      */
-    public static Result palletLoading(
+    private int evaluate_cut(
+            int L0, int W0, int n,
+            int x1, int x2, int y1, int y2,
+            int zlb, AtomicInteger shared, Frame[] frames) {
+
+        Frame frame = frames[n];
+        int[] cut = frame.cut;
+        int[] zi = frame.zi;
+
+        // Define sub-blocks
+        int L1 = x1, W1 = W0 - y1;
+        int L2 = L0 - x1, W2 = W0 - y2;
+        int L3 = x2 - x1, W3 = y2 - y1;
+        int L4 = x2, W4 = y1;
+        int L5 = L0 - x2, W5 = y2;
+
+        // Create block list
+        set_block(cut, 0, 0, W4, L1, W1);
+        set_block(cut, 1, L1, W3 + W4, L2, W2);
+        set_block(cut, 2, L1, W4, L3, W3);
+        set_block(cut, 3, 0, 0, L4, W4);
+        set_block(cut, 4, L1 + L3, 0, L5, W5);
+
+        int z_0 = 0;
+
+        if (n < N) {
+            // Same sub-blocks in another arrangement, so the same count
+            if (!frame.seen.add(cut, xy_gen, Math.min(l, w))) {
+                frame.dominated++;
+                return -1;
+            }
+            frame.evaluated++;
+
+            // Recursive exploration
+            for (int i = 0; i < 5; i++) {
+                zi[i] = bounds.get(cut[4 * i + 2], cut[4 * i + 3]); // z_i are now all z_ub_i
+            }
+
+            BlockList temp_blocks = frame.temp;
+            temp_blocks.clear();
+            z_0 = sum_vector(zi);
+            for (int i = 0; i < 5; i++) {
+                if ((shared == null ? zlb : shared.get()) >= z_0) {
+                    frame.eval_pruned++;
+                    break;
+                }
+
+                zi[i] = solve_block(cut[4 * i + 2], cut[4 * i + 3], n + 1,
+                        cut[4 * i], cut[4 * i + 1], temp_blocks, frames);
+                if (control.isStopped()) return -1;
+                z_0 = sum_vector(zi);
+            }
+        } else {
+            // At max recursion, compute lower bounds
+            frame.evaluated++;
+            for (int i = 0; i < 5; i++) {
+                z_0 += compute_zlb(cut[4 * i + 2], cut[4 * i + 3], l, w);
+            }
+        }
+
+        return z_0;
+    }
+
+    /**
+     * Count that top-level cuts must beat besides the node's own incumbent.
+     * Deeper nodes ignore it, since their results are cached as exact.
+     */
+    private int root_floor(int n) {
+        return n == root_depth && external != null ? external.get() : 0;
+    }
+
+    /**
+     * Hand a new top-level layout, moved to the pallet's offsets, to the listener
+     */
+    private void report_incumbent(int count, BlockList blocks) {
+        if (listener == null) return;
+        BlockList placed = new BlockList(blocks.size());
+        placed.addAll(blocks, root_x_offset, root_y_offset);
+        listener.onIncumbent(new Result(count, placed, false, false, l, w));
+    }
+
+    private static void set_block(int[] cut, int i, int x, int y, int L, int W) {
+        cut[4 * i] = x;
+        cut[4 * i + 1] = y;
+        cut[4 * i + 2] = L;
+        cut[4 * i + 3] = W;
+    }
+
+    /**
+     * Signature set of the top-level node, shared by the workers of a parallel search
+     */
+    private static class SharedSignatures extends CutSignatures {
+        @Override
+        synchronized boolean add(int[] cut, XYGenerator xy_gen, int min_side) {
+            return super.add(cut, xy_gen, min_side);
+        }
+    }
+
+    /**
+     * Top-level cut search shared by all fork/join workers of one solve.
+     * <p>
+     * Workers pull small chunks of the cut queue's windows from a shared cursor, so the
+     * search keeps the queue's order across workers and they share the incumbent for pruning.
+     * The worker that finds the window used up collects the next one, while the others
+     * finish the chunks they hold, so small raster-order windows keep every worker busy.
+     * The workers and their scratch frames live for the whole search, and equivalent
+     * top-level cuts are skipped whichever worker tried the first of them.
+     */
+    private class ParallelSearch {
+        private static final int CHUNK = 8;
+
+        private final int L0, W0, n, zub;
+        private final int[] X, Y;
+        private final int nx, ny;
+        private final AtomicInteger incumbent;
+        private final CutSignatures seen = new SharedSignatures();
+        private CutQueue queue;
+        private int size, cursor;  // cuts in the current window and the next one to hand out
+        private boolean done;      // no cut is left, or none can beat the incumbent
+        private volatile Result best;
+
+        ParallelSearch(int L0, int W0, int n, int[] X, int nx, int[] Y, int ny,
+                       int zub, Result initial) {
+            this.L0 = L0;
+            this.W0 = W0;
+            this.n = n;
+            this.X = X;
+            this.nx = nx;
+            this.Y = Y;
+            this.ny = ny;
+            this.zub = zub;
+            this.incumbent = new AtomicInteger(initial.getCount());
+            this.best = initial;
+        }
+
+        /**
+         * Expand the queue until the bound is reached or nothing is left
+         */
+        private void run(Frame frame) {
+            queue = frame.queue;
+            queue.start(n < N);
+            List<CutWorker> workers = new ArrayList<>();
+            for (int i = 0; i < pool.getParallelism(); i++) workers.add(new CutWorker());
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(workers)));
+            if (incumbent.get() == zub) frame.early_exits++;
+        }
+
+        /**
+         * Copy the next cuts that can still beat the incumbent into {@code chunk}, as
+         * (x1, x2, y1, y2) each, collecting the next window when this one is used up
+         *
+         * @return the number of cuts copied, or 0 when the search is over
+         */
+        private synchronized int next_chunk(int[] chunk) {
+            while (!done) {
+                int floor = Math.max(incumbent.get(), root_floor(n));
+                if (floor >= zub || control.isStopped()) break;
+
+                int count = 0;
+                while (cursor < size && count < CHUNK) {
+                    int k = cursor++;
+                    if (queue.bound(k) <= floor) {
+                        // In a sorted window the rest cannot beat the incumbent either
+                        if (queue.sorted()) cursor = size;
+                        continue;
+                    }
+                    chunk[4 * count] = X[queue.x1_index(k)];
+                    chunk[4 * count + 1] = X[queue.x2_index(k)];
+                    chunk[4 * count + 2] = Y[queue.y1_index(k)];
+                    chunk[4 * count + 3] = Y[queue.y2_index(k)];
+                    count++;
+                }
+                if (count > 0) return count;
+
+                if (control.poll()) break;
+                size = queue.fill(L0, W0, X, nx, Y, ny, bounds, floor, zub, control);
+                cursor = 0;
+                if (size == 0) break;
+            }
+            done = true;
+            return 0;
+        }
+
+        /**
+         * Record a candidate if it still beats the shared incumbent
+         */
+        private synchronized void offer(int count, BlockList blocks) {
+            if (count > best.getCount()) {
+                best = new Result(count, blocks);
+                incumbent.set(count);
+                report_incumbent(count, blocks);
+            }
+        }
+
+        /**
+         * Expand chunks of cuts until none is left that can beat the incumbent
+         */
+        @SuppressWarnings("serial")  // never serialized
+        private class CutWorker extends RecursiveAction {
+            @Override
+            protected void compute() {
+                Frame[] frames = new_frames();
+                frames[n].seen = seen;
+                try {
+                    expand(frames);
+                } finally {
+                    merge_stats(frames);
+                }
+            }
+
+            private void expand(Frame[] frames) {
+                int[] chunk = new int[4 * CHUNK];
+                for (int count = next_chunk(chunk); count > 0; count = next_chunk(chunk)) {
+                    for (int k = 0; k < count; k++) {
+                        if (control.poll()) return;
+                        int x1 = chunk[4 * k], x2 = chunk[4 * k + 1];
+                        int y1 = chunk[4 * k + 2], y2 = chunk[4 * k + 3];
+                        int z_0 = evaluate_cut(L0, W0, n, x1, x2, y1, y2, 0, incumbent, frames);
+                        if (z_0 > incumbent.get()) offer(z_0, frames[n].copy_candidate(n == N));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Anytime pallet loading function.
+     * <p>
+     * The search stops early once {@code control} is cancelled or its deadline passes, and
+     * then returns the best layout found so far, flagged as stopped. Every improved
+     * top-level layout is handed to {@code listener} as soon as it is found.
+     */
+    public synchronized Result palletLoading(
             int L0, int W0, int n, int N0, int l0, int w0,
-            int x_offset, int y_offset) {
+            int x_offset, int y_offset, SubproblemCache subproblemCache,
+            SolveControl solveControl, IncumbentListener incumbentListener) {
+        if (solution_store == null || n > N0) {
+            return validated(solve(L0, W0, n, N0, l0, w0, x_offset, y_offset,
+                    subproblemCache, solveControl, incumbentListener), L0, W0, x_offset, y_offset);
+        }
+
+        // Stored solutions are kept in canonical form, so solve that form on a miss too
+        PalletInstance instance = new PalletInstance(L0, W0, N0 - n, l0, w0, x_offset, y_offset);
+        PalletInstance key = instance.canonical();
+        Result canonical = solution_store.get(key);
+        if (canonical == null) {
+            IncumbentListener mapped = incumbentListener == null ? null
+                    : incumbent -> incumbentListener.onIncumbent(instance.from_canonical(incumbent));
+            canonical = solve(key.getL0(), key.getW0(), 0, key.getN0(), key.getBoxL(), key.getBoxW(),
+                    0, 0, subproblemCache, solveControl, mapped);
+
+            // A stopped search, or one pruned against other engines, may have missed better layouts
+            if (!canonical.isStopped() && external == null) solution_store.put(key, canonical);
+        }
+        return validated(instance.from_canonical(canonical), L0, W0, x_offset, y_offset);
+    }
+
+    /**
+     * Pass a result through, checking its layout first if validation is on
+     */
+    private Result validated(Result result, int L0, int W0, int x_offset, int y_offset) {
+        if (!validate_results) return result;
+        LayoutValidator.Report report = LayoutValidator.check(result, L0, W0, x_offset, y_offset);
+        if (!report.isValid())
+            throw new IllegalStateException("invalid layout for " + L0 + "x" + W0 + " with "
+                    + result.getPlacements().getBoxL() + "x" + result.getPlacements().getBoxW()
+                    + " boxes: " + report);
+        return result;
+    }
 
+    /**
+     * Search one instance from scratch
+     */
+    private Result solve(
+            int L0, int W0, int n, int N0, int l0, int w0,
+            int x_offset, int y_offset, SubproblemCache subproblemCache,
+            SolveControl solveControl, IncumbentListener incumbentListener) {
         N = N0;
+        prepare(L0, W0, n, l0, w0, x_offset, y_offset, subproblemCache, solveControl, incumbentListener);
+        return instrumented(L0, W0, n, Math.max(N0, n), l0, w0,
+                () -> recursive_block_decomposition(L0, W0, n, x_offset, y_offset));
+    }
+
+    /**
+     * Iterative deepening pallet loading function.
+     * <p>
+     * Solves at depth N = 1, 2, ... up to {@code maxN}. Every pass starts from the previous
+     * pass's layout as its incumbent and keeps the subproblem results of the earlier passes,
+     * which stay valid because they are keyed by remaining depth. Stops once the layout
+     * reaches the upper bound or {@code control} stops, and returns the best layout found.
+     * The listener only sees layouts that improve on every earlier one.
+     */
+    public synchronized Result palletLoadingDeepening(
+            int L0, int W0, int l0, int w0, int maxN,
+            SolveControl solveControl, IncumbentListener incumbentListener) {
+        if (maxN < 1) throw new IllegalArgumentException("maxN must be >= 1: " + maxN);
+        if (maxN > SubproblemCache.MAX_DEPTH)
+            throw new IllegalArgumentException("maxN must be <= " + SubproblemCache.MAX_DEPTH + ": " + maxN);
+
+        AtomicInteger reported = new AtomicInteger();
+        IncumbentListener improving = incumbentListener == null ? null : incumbent -> {
+            if (incumbent.getCount() > reported.get()) {
+                reported.set(incumbent.getCount());
+                incumbentListener.onIncumbent(incumbent);
+            }
+        };
+
+        N = 1;
+        prepare(L0, W0, 0, l0, w0, 0, 0, own_cache, solveControl, improving);
+        return validated(instrumented(L0, W0, 0, maxN, l0, w0, () -> {
+            int bound = bounds.get(L0, W0);
+            Result best = null;
+            try {
+                for (int depth = 1; depth <= maxN; depth++) {
+                    N = depth;
+                    root_seed = best;
+                    Result pass = recursive_block_decomposition(L0, W0, 0, 0, 0);
+
+                    // A root solved by an earlier call comes from the cache, without the seed
+                    if (best == null || pass.getCount() >= best.getCount()) best = pass;
+                    if (best.getCount() >= bound || control.isStopped()) break;
+                }
+            } finally {
+                root_seed = null;
+            }
+            return best;
+        }), L0, W0, 0, 0);
+    }
+
+    @Override
+    public String name() {
+        return "block-decomposition";
+    }
+
+    /**
+     * Solve at the instance's depth, skipping top-level cuts that cannot beat {@code shared}
+     */
+    @Override
+    public synchronized Result solve(PalletInstance instance, SolveControl solveControl,
+                                     AtomicInteger shared, IncumbentListener incumbentListener) {
+        external = shared;
+        try {
+            return palletLoading(instance.getL0(), instance.getW0(), 0, instance.getN0(),
+                    instance.getBoxL(), instance.getBoxW(), instance.getXOffset(), instance.getYOffset(),
+                    own_cache, solveControl, incumbentListener);
+        } finally {
+            external = null;
+        }
+    }
+
+    /**
+     * Pausable search of one instance with this solver's bound provider; call
+     * {@link IterativeSearch#run()} to drive it
+     */
+    public synchronized IterativeSearch iterativeSearch(
+            int L0, int W0, int N0, int l0, int w0, SolveControl solveControl) {
+        return new IterativeSearch(L0, W0, N0, l0, w0, bound_provider, new SubproblemCache(), solveControl);
+    }
+
+    /**
+     * Set up the per-solve state shared by every pass of a solve
+     */
+    private void prepare(
+            int L0, int W0, int n, int l0, int w0,
+            int x_offset, int y_offset, SubproblemCache subproblemCache,
+            SolveControl solveControl, IncumbentListener incumbentListener) {
+        // Subproblems are cached under keys with a bounded side and depth
+        if (Math.max(L0, W0) > SubproblemCache.MAX_SIDE || N - n > SubproblemCache.MAX_DEPTH)
+            throw new IllegalArgumentException("instance too large for the subproblem cache: "
+                    + L0 + "x" + W0 + " with " + (N - n) + " levels");
         l = l0;
         w = w0;
-        xy_gen = new XYGenerator(L0, W0, l, w);
+        root_depth = n;
+        root_x_offset = x_offset;
+        root_y_offset = y_offset;
+        xy_gen = RasterRegistry.shared().generator(L0, W0, l, w);
+        bounds = new BoundTable(xy_gen, bound_provider, l, w);
+        cache = subproblemCache;
+        cache.bind(l0, w0);  // entries stay valid for every pallet with this carton
+        cache_hits = cache.getHits();
+        cache_misses = cache.getMisses();
+        control = solveControl;
+        listener = incumbentListener;
+    }
+
+    /**
+     * Run a prepared search, collecting statistics and JFR events, and flag the result
+     */
+    private Result instrumented(int L0, int W0, int n, int max_depth, int l0, int w0,
+                                Supplier<Result> search) {
+        // Registering the event classes is slow, so skip them until JFR is running
+        SolveEvent event = FlightRecorder.isInitialized() ? new SolveEvent() : null;
+        if (event != null) event.begin();
+        long start = System.nanoTime();
+        boolean recording = event != null && event.isEnabled();
+        stats = collect_stats || recording ? new SolveStats(n, max_depth + 1) : null;
+
+        try {
+            Result result = search.get();
+            boolean optimal = result.getCount() >= bounds.get(L0, W0);
+            SolveStats solved = stats;
+            if (solved != null) {
+                solved.finish(cache.getHits() - cache_hits, cache.getMisses() - cache_misses, bounds.computed(),
+                        System.nanoTime() - start);
+                if (recording) commit_events(event, solved, L0, W0, result.getCount(), optimal);
+            }
+            return new Result(result.getCount(), result.getBlockList(), optimal,
+                    control.isStopped(), l0, w0, collect_stats ? solved : null);
+        } finally {
+            control = null;
+            listener = null;
+            stats = null;
+        }
+    }
+
+    /**
+     * Publish a finished solve and its per-depth counters to JFR
+     */
+    private void commit_events(SolveEvent event, SolveStats solved, int L0, int W0,
+                               int count, boolean optimal) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.palletL = L0;
+        event.palletW = W0;
+        event.boxL = l;
+        event.boxW = w;
+        event.maxDepth = N;
+        event.count = count;
+        event.provenOptimal = optimal;
+        event.stopped = control.isStopped();
+        event.nodes = solved.getNodes();
+        event.symmetricRejects = solved.getSymmetricRejects();
+        event.dominated = solved.getDominated();
+        event.boundPruned = solved.getBoundPruned();
+        event.evalPruned = solved.getEvalPruned();
+        event.earlyExits = solved.getEarlyExits();
+        event.cacheHits = solved.getCacheHits();
+        event.cacheMisses = solved.getCacheMisses();
+        event.commit();
+
+        for (int depth = solved.getRootDepth(); depth < solved.getDepths(); depth++) {
+            SolveDepthEvent depth_event = new SolveDepthEvent();
+            depth_event.depth = depth;
+            depth_event.nodes = solved.getNodes(depth);
+            depth_event.symmetricRejects = solved.getSymmetricRejects(depth);
+            depth_event.dominated = solved.getDominated(depth);
+            depth_event.evaluated = solved.getEvaluated(depth);
+            depth_event.boundPruned = solved.getBoundPruned(depth);
+            depth_event.evalPruned = solved.getEvalPruned(depth);
+            depth_event.earlyExits = solved.getEarlyExits(depth);
+            depth_event.time = solved.getNanos(depth);
+            depth_event.commit();
+        }
+    }
+
+    /**
+     * Main pallet loading function using the given subproblem cache
+     */
+    public Result palletLoading(
+            int L0, int W0, int n, int N0, int l0, int w0,
+            int x_offset, int y_offset, SubproblemCache subproblemCache) {
+        return palletLoading(L0, W0, n, N0, l0, w0, x_offset, y_offset, subproblemCache,
+                new SolveControl(), null);
+    }
+
+    /**
+     * Anytime pallet loading function with default offsets
+     */
+    public Result palletLoading(
+            int L0, int W0, int n, int N0, int l0, int w0,
+            SolveControl solveControl, IncumbentListener incumbentListener) {
+        return palletLoading(L0, W0, n, N0, l0, w0, 0, 0, own_cache,
+                solveControl, incumbentListener);
+    }
 
-        return recursive_block_decomposition(L0, W0, n, x_offset, y_offset);
+    /**
+     * Main pallet loading function
+     */
+    public Result palletLoading(
+            int L0, int W0, int n, int N0, int l0, int w0,
+            int x_offset, int y_offset) {
+        return palletLoading(L0, W0, n, N0, l0, w0, x_offset, y_offset, own_cache);
     }
 
     /**
      * Main pallet loading function with default offsets
      */
-    public static Result palletLoading(int L0, int W0, int n, int N0, int l0, int w0) {
+    public Result palletLoading(int L0, int W0, int n, int N0, int l0, int w0) {
         return palletLoading(L0, W0, n, N0, l0, w0, 0, 0);
     }
 
+    /**
+     * Batch pallet loading function.
+     * <p>
+     * Every instance is reduced to its canonical form, each distinct canonical instance is
+     * solved once (in parallel over this solver's pool, if any) and its layout is mapped back
+     * onto every instance that shares it. Canonical instances with the same carton share one
+     * subproblem cache, so blocks solved for one pallet are reused by the others. Results
+     * are returned in input order.
+     */
+    public List<Result> palletLoading(List<PalletInstance> instances) {
+        Map<PalletInstance, ForkJoinTask<Result>> solves = new LinkedHashMap<>();
+        Map<Long, SubproblemCache> caches = new HashMap<>();  // by canonical carton
+        List<PalletInstance> keys = new ArrayList<>(instances.size());
+        for (PalletInstance instance : instances) {
+            PalletInstance key = instance.canonical();
+            keys.add(key);
+            SubproblemCache cache = caches.computeIfAbsent(
+                    ((long) key.getBoxL() << 32) | key.getBoxW(), carton -> new SubproblemCache());
+            solves.computeIfAbsent(key, k -> ForkJoinTask.adapt(() -> {
+                RecursiveBDModule solver = new RecursiveBDModule(null);
+                solver.setBoundProvider(getBoundProvider());
+                solver.setCollectStats(isCollectStats());
+                solver.setSolutionStore(getSolutionStore());
+                solver.setValidateResults(isValidateResults());
+                return solver.palletLoading(
+                        k.getL0(), k.getW0(), 0, k.getN0(), k.getBoxL(), k.getBoxW(), 0, 0, cache);
+            }));
+        }
+
+        if (pool == null) {
+            for (ForkJoinTask<Result> solve : solves.values()) solve.invoke();
+        } else {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(solves.values())));
+        }
+
+        List<Result> results = new ArrayList<>(instances.size());
+        for (int i = 0; i < instances.size(); i++) {
+            results.add(instances.get(i).from_canonical(solves.get(keys.get(i)).join()));
+        }
+        return results;
+    }
+
     /**
      * Main method for testing
      */
@@ -284,9 +1055,10 @@ public class RecursiveBDModule {
         int l0 = 7;
         int w0 = 5;
 
-        Result result = palletLoading(L0, W0, n, N0, l0, w0);
+        Result result = new RecursiveBDModule().palletLoading(L0, W0, n, N0, l0, w0);
 
         System.out.println("Optimal packing count: " + result.getCount());
+        System.out.println("Placed boxes: " + result.getPlacements().size());
         System.out.println("Blocks: ");
         for (Tuple4<Integer, Integer, Integer, Integer> block : result.getBlocks()) {
             System.out.println("(" + block.getFirst() + ", " + block.getSecond() + ", " +
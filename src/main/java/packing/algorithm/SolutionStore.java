@@ -0,0 +1,215 @@
+package packing.algorithm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent cache of solved canonical instances, shared by every solver process on a host.
+ * <p>
+ * Solutions are appended to a single file and never rewritten. Readers map the file and
+ * index the records they have seen, so a repeated instance is decoded straight from the
+ * mapping without any search. Writers append under an exclusive file lock; each record
+ * carries a checksum, so a reader that catches a record half written simply stops before
+ * it and picks it up on a later lookup.
+ * <p>
+ * Indexed records are never modified, so lookups of known instances read the mapping
+ * without locking; only a miss, which has to scan for new records, and an append take
+ * the store's lock. The store is only a cache: a failed read or append, including one on
+ * a full store, is counted and logged, and the lookup misses or the solution goes
+ * unstored instead of failing the solve.
+ * <p>
+ * Record layout, big-endian: body length, then the body (L0, W0, N0, l0, w0, count, flags
+ * byte, block count, four ints per block), then the CRC-32 of the body.
+ * Only one store per file should be open in a JVM, because file locks are held per process.
+ */
+public class SolutionStore implements Closeable {
+    private static final int MAGIC = 0x504C4443;  // "PLDC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int MIN_BODY = 5 * 4 + 4 + 1 + 4;
+    private static final byte PROVEN_OPTIMAL = 1;
+
+    private static final System.Logger LOG = System.getLogger(SolutionStore.class.getName());
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Map<PalletInstance, Integer> index = new ConcurrentHashMap<>();  // key -> record offset
+    private final AtomicLong errors = new AtomicLong();
+    private volatile MappedByteBuffer mapped;  // covers every indexed record
+    private long scanned = HEADER_BYTES;  // records before this offset are indexed
+
+    // Constructor
+    @SuppressWarnings("try")  // the file lock is only held, never referenced
+    public SolutionStore(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try (FileLock lock = channel.lock()) {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                while (header.hasRemaining()) channel.write(header, header.position());
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        if (header.position() < HEADER_BYTES || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("not a solution store: " + path);
+        }
+        refresh();
+    }
+
+    /**
+     * Stored solution of a canonical instance, or null if no process has stored it yet
+     */
+    public RecursiveBDModule.Result get(PalletInstance key) {
+        Integer offset = index.get(key);
+        if (offset == null) {
+            synchronized (this) {
+                try {
+                    refresh();
+                } catch (IOException | RuntimeException e) {
+                    failed("read", e);
+                    return null;
+                }
+            }
+            offset = index.get(key);
+            if (offset == null) return null;
+        }
+
+        // The mapping was replaced, if at all, by a larger one before the offset was indexed
+        MappedByteBuffer records = mapped;
+        return records == null ? null : decode(records, offset);
+    }
+
+    /**
+     * Append the solution of a canonical instance unless some process already stored it;
+     * returns whether it is stored now
+     */
+    @SuppressWarnings("try")
+    public synchronized boolean put(PalletInstance key, RecursiveBDModule.Result result) {
+        if (index.containsKey(key)) return true;
+        ByteBuffer record = encode(key, result);
+        try (FileLock lock = channel.lock()) {
+            refresh();
+            if (index.containsKey(key)) return true;
+
+            // Nobody else is writing, so bytes past the last whole record are a torn append;
+            // overwrite them rather than truncate, since other processes may have them mapped
+            long end = scanned;
+            if (end + record.remaining() > Integer.MAX_VALUE)
+                throw new IOException("solution store is full");
+            while (record.hasRemaining()) channel.write(record, end + record.position());
+            refresh();
+            return index.containsKey(key);
+        } catch (IOException | RuntimeException e) {
+            failed("append to", e);
+            return false;
+        }
+    }
+
+    /**
+     * Number of solutions indexed by this process
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Number of reads and appends that failed since the store was opened
+     */
+    public long getErrors() {
+        return errors.get();
+    }
+
+    private void failed(String operation, Exception e) {
+        // Log the first failure; a full or broken store tends to fail every call after it
+        if (errors.getAndIncrement() == 0) {
+            LOG.log(System.Logger.Level.WARNING, "cannot " + operation + " solution store " + path, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+        mapped = null;
+    }
+
+    /**
+     * Map any growth of the file and index the whole records appended since the last scan
+     */
+    private void refresh() throws IOException {
+        long size = Math.min(channel.size(), Integer.MAX_VALUE);
+        if (size <= scanned) return;
+        MappedByteBuffer mapped = this.mapped;
+        if (mapped == null || mapped.capacity() < size) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            this.mapped = mapped;  // before indexing, so lookups of new records see it
+        }
+
+        CRC32 crc = new CRC32();
+        while (scanned + 4 <= size) {
+            int at = (int) scanned;
+            int length = mapped.getInt(at);
+            if (length < MIN_BODY || at + 4L + length + 4 > size) break;
+
+            crc.reset();
+            crc.update(mapped.slice(at + 4, length));
+            if ((int) crc.getValue() != mapped.getInt(at + 4 + length)) break;
+
+            PalletInstance key = new PalletInstance(mapped.getInt(at + 4), mapped.getInt(at + 8),
+                    mapped.getInt(at + 12), mapped.getInt(at + 16), mapped.getInt(at + 20));
+            index.putIfAbsent(key, at);
+            scanned = at + 4L + length + 4;
+        }
+    }
+
+    private static RecursiveBDModule.Result decode(MappedByteBuffer mapped, int at) {
+        int p = at + 4 + 5 * 4;
+        int count = mapped.getInt(p);
+        boolean optimal = (mapped.get(p + 4) & PROVEN_OPTIMAL) != 0;
+        int size = mapped.getInt(p + 5);
+        p += 9;
+
+        BlockList blocks = new BlockList(size);
+        for (int b = 0; b < size; b++, p += 16) {
+            blocks.add(mapped.getInt(p), mapped.getInt(p + 4), mapped.getInt(p + 8), mapped.getInt(p + 12));
+        }
+        return new RecursiveBDModule.Result(count, blocks, optimal, false);
+    }
+
+    private static ByteBuffer encode(PalletInstance key, RecursiveBDModule.Result result) {
+        BlockList blocks = result.getBlockList();
+        int length = MIN_BODY + blocks.size() * 16;
+        ByteBuffer record = ByteBuffer.allocate(4 + length + 4);
+        record.putInt(length)
+                .putInt(key.getL0()).putInt(key.getW0()).putInt(key.getN0())
+                .putInt(key.getBoxL()).putInt(key.getBoxW())
+                .putInt(result.getCount())
+                .put(result.isProvenOptimal() ? PROVEN_OPTIMAL : 0)
+                .putInt(blocks.size());
+        for (int b = 0; b < blocks.size(); b++) {
+            record.putInt(blocks.getX(b)).putInt(blocks.getY(b)).putInt(blocks.getL(b)).putInt(blocks.getW(b));
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, length);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        return record;
+    }
+}
@@ -0,0 +1,71 @@
+package packing.algorithm;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cancellation token and optional deadline for a single solve.
+ * <p>
+ * Once the token is cancelled or the deadline passes, the solver stops expanding new
+ * cuts and returns the best complete layout it has found so far.
+ */
+public class SolveControl {
+    private final long start;    // System.nanoTime() at construction
+    private final long timeout;  // nanoseconds from start, Long.MAX_VALUE when unbounded
+    private final SolveControl parent;
+    private volatile boolean stopped;
+
+    /**
+     * Control without a deadline, stopped only through {@link #cancel()}
+     */
+    public SolveControl() {
+        this(null);
+    }
+
+    private SolveControl(SolveControl parent) {
+        this.start = 0;
+        this.timeout = Long.MAX_VALUE;
+        this.parent = parent;
+    }
+
+    /**
+     * Control that stops the solve once the timeout has elapsed
+     */
+    public SolveControl(long timeout, TimeUnit unit) {
+        // nanoTime values are only meaningful as differences, which cannot overflow here;
+        // toNanos saturates, so huge timeouts end up unbounded
+        this.start = System.nanoTime();
+        this.timeout = Math.max(0, unit.toNanos(timeout));
+        this.parent = null;
+    }
+
+    /**
+     * Control that stops together with this one and can also be cancelled on its own
+     */
+    public SolveControl child() {
+        return new SolveControl(this);
+    }
+
+    /**
+     * Ask the solve to stop as soon as possible
+     */
+    public void cancel() {
+        stopped = true;
+    }
+
+    /**
+     * Whether the solve has been asked to stop
+     */
+    public boolean isStopped() {
+        if (!stopped && parent != null && parent.isStopped()) stopped = true;
+        return stopped;
+    }
+
+    /**
+     * Check the deadline, then report whether the solve should stop
+     */
+    boolean poll() {
+        if (!stopped && timeout != Long.MAX_VALUE && System.nanoTime() - start >= timeout) stopped = true;
+        if (!stopped && parent != null && parent.poll()) stopped = true;
+        return stopped;
+    }
+}
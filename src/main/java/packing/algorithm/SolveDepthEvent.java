@@ -0,0 +1,22 @@
+package packing.algorithm;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event with the counters of one recursion depth, committed when a solve ends
+ */
+@Name("packing.SolveDepth")
+@Label("Pallet Solve Depth")
+@Category("Packing")
+@StackTrace(false)
+class SolveDepthEvent extends Event {
+    @Label("Depth") int depth;
+    @Label("Nodes") long nodes;
+    @Label("Symmetric Rejects") long symmetricRejects;
+    @Label("Dominated") long dominated;
+    @Label("Evaluated") long evaluated;
+    @Label("Bound Pruned") long boundPruned;
+    @Label("Eval Pruned") long evalPruned;
+    @Label("Early Exits") long earlyExits;
+    @Label("Time") @Timespan(Timespan.NANOSECONDS) long time;
+}
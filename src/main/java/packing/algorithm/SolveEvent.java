@@ -0,0 +1,29 @@
+package packing.algorithm;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event spanning one {@code palletLoading} solve
+ */
+@Name("packing.Solve")
+@Label("Pallet Solve")
+@Category("Packing")
+@StackTrace(false)
+class SolveEvent extends Event {
+    @Label("Pallet Length") int palletL;
+    @Label("Pallet Width") int palletW;
+    @Label("Box Length") int boxL;
+    @Label("Box Width") int boxW;
+    @Label("Max Depth") int maxDepth;
+    @Label("Count") int count;
+    @Label("Proven Optimal") boolean provenOptimal;
+    @Label("Stopped") boolean stopped;
+    @Label("Nodes") long nodes;
+    @Label("Symmetric Rejects") long symmetricRejects;
+    @Label("Dominated") long dominated;
+    @Label("Bound Pruned") long boundPruned;
+    @Label("Eval Pruned") long evalPruned;
+    @Label("Early Exits") long earlyExits;
+    @Label("Cache Hits") long cacheHits;
+    @Label("Cache Misses") long cacheMisses;
+}
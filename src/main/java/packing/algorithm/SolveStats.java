@@ -0,0 +1,129 @@
+package packing.algorithm;
+
+/**
+ * Search counters of one solve, broken down by recursion depth.
+ * <p>
+ * Only collected when the solver is asked to, see
+ * {@link RecursiveBDModule#setCollectStats(boolean)}, or while the {@code packing.Solve}
+ * JFR event is enabled. Times are wall-clock and include deeper levels; with a parallel
+ * solver the times of the levels below the root add up over the workers.
+ */
+public class SolveStats {
+    private final int root_depth;
+    private final long[] nodes;        // subproblems expanded (cache misses)
+    private final long[] candidates;   // non-symmetrical cuts enumerated
+    private final long[] symmetric;    // cuts rejected by isSymmetrical
+    private final long[] dominated;    // cuts skipped as equivalent to one already seen
+    private final long[] evaluated;    // cuts expanded into their five blocks
+    private final long[] eval_pruned;  // expanded cuts abandoned once zlb >= z_0
+    private final long[] early_exits;  // nodes closed because zlb reached zub
+    private final long[] nanos;
+    private long cache_hits, cache_misses;
+    private int bound_entries;
+    private long wall_nanos;
+
+    SolveStats(int root_depth, int depths) {
+        this.root_depth = root_depth;
+        this.nodes = new long[depths];
+        this.candidates = new long[depths];
+        this.symmetric = new long[depths];
+        this.dominated = new long[depths];
+        this.evaluated = new long[depths];
+        this.eval_pruned = new long[depths];
+        this.early_exits = new long[depths];
+        this.nanos = new long[depths];
+    }
+
+    /**
+     * Add the counters of one depth, collected by a single walk of the tree
+     */
+    synchronized void add(int depth, long nodes, long candidates, long symmetric, long dominated,
+                          long evaluated, long eval_pruned, long early_exits, long nanos) {
+        this.nodes[depth] += nodes;
+        this.candidates[depth] += candidates;
+        this.symmetric[depth] += symmetric;
+        this.dominated[depth] += dominated;
+        this.evaluated[depth] += evaluated;
+        this.eval_pruned[depth] += eval_pruned;
+        this.early_exits[depth] += early_exits;
+        this.nanos[depth] += nanos;
+    }
+
+    synchronized void finish(long cache_hits, long cache_misses, int bound_entries, long wall_nanos) {
+        this.cache_hits = cache_hits;
+        this.cache_misses = cache_misses;
+        this.bound_entries = bound_entries;
+        this.wall_nanos = wall_nanos;
+    }
+
+    /**
+     * Depth of the root node; depths below it are reported as zero
+     */
+    public int getRootDepth() { return root_depth; }
+
+    /**
+     * One past the deepest recursion depth
+     */
+    public int getDepths() { return nodes.length; }
+
+    public synchronized long getNodes(int depth) { return nodes[depth]; }
+    public synchronized long getCandidates(int depth) { return candidates[depth]; }
+    public synchronized long getSymmetricRejects(int depth) { return symmetric[depth]; }
+    public synchronized long getDominated(int depth) { return dominated[depth]; }
+    public synchronized long getEvaluated(int depth) { return evaluated[depth]; }
+    public synchronized long getEvalPruned(int depth) { return eval_pruned[depth]; }
+    public synchronized long getEarlyExits(int depth) { return early_exits[depth]; }
+    public synchronized long getNanos(int depth) { return nanos[depth]; }
+
+    /**
+     * Cuts never expanded because their bound could not beat the incumbent, including
+     * the ones left over when a node closed early
+     */
+    public synchronized long getBoundPruned(int depth) {
+        return Math.max(0, candidates[depth] - dominated[depth] - evaluated[depth]);
+    }
+
+    public synchronized long getNodes() { return sum(nodes); }
+    public synchronized long getSymmetricRejects() { return sum(symmetric); }
+    public synchronized long getDominated() { return sum(dominated); }
+    public synchronized long getEvaluated() { return sum(evaluated); }
+    public synchronized long getEvalPruned() { return sum(eval_pruned); }
+    public synchronized long getEarlyExits() { return sum(early_exits); }
+
+    public synchronized long getBoundPruned() {
+        long pruned = 0;
+        for (int depth = 0; depth < nodes.length; depth++) pruned += getBoundPruned(depth);
+        return pruned;
+    }
+
+    public synchronized long getCacheHits() { return cache_hits; }
+    public synchronized long getCacheMisses() { return cache_misses; }
+
+    /**
+     * Distinct raster-reduced rectangles whose upper bound was computed
+     */
+    public synchronized int getBoundEntries() { return bound_entries; }
+
+    public synchronized long getWallNanos() { return wall_nanos; }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) sum += value;
+        return sum;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("wall %.3f ms, cache %d hits / %d misses, %d bound entries%n",
+                wall_nanos / 1e6, cache_hits, cache_misses, bound_entries));
+        sb.append(String.format("%5s %10s %12s %12s %12s %12s %12s %10s %12s%n",
+                "depth", "nodes", "symmetric", "dominated", "evaluated", "bound_prune", "eval_prune", "early", "ms"));
+        for (int depth = root_depth; depth < nodes.length; depth++) {
+            sb.append(String.format("%5d %10d %12d %12d %12d %12d %12d %10d %12.3f%n",
+                    depth, nodes[depth], symmetric[depth], dominated[depth], evaluated[depth], getBoundPruned(depth),
+                    eval_pruned[depth], early_exits[depth], nanos[depth] / 1e6));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,184 @@
+package packing.algorithm;
+
+import java.util.*;
+
+/**
+ * Bounded transposition table for block decomposition subproblems.
+ * <p>
+ * Entries are keyed by the sub-rectangle size (L, W) and the remaining recursion
+ * depth, and hold the best count together with a block layout relative to the
+ * sub-rectangle's own origin, so a hit only needs its blocks re-offset.
+ * The table is split into independently locked segments so parallel workers of
+ * one solve do not contend on a single lock; eviction is applied per segment.
+ * <p>
+ * A subproblem's result depends on the carton but not on the pallet it was cut from, so
+ * the entries serve every later solve with the same carton, whatever its pallet size or
+ * depth. Solvers {@link #bind} the cache to their carton, which only drops the entries
+ * when the carton changes; solves sharing a cache must therefore use one carton at a time.
+ */
+public class SubproblemCache {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int MAX_SEGMENTS = 16;
+
+    /**
+     * Order in which entries are evicted once the cache is full
+     */
+    public enum Eviction {
+        LRU,  // least recently used entry goes first
+        FIFO  // oldest inserted entry goes first
+    }
+
+    private final int capacity;
+    private final Eviction eviction;
+    private final Segment[] segments;
+    private int carton_l, carton_w;  // carton the entries belong to, 0 x 0 when unbound
+
+    // Constructor
+    public SubproblemCache(int capacity, Eviction eviction) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("capacity must be >= 0: " + capacity);
+        this.capacity = capacity;
+        this.eviction = eviction;
+
+        // Keep at least a few entries per segment so small caches stay exact
+        int count = 1;
+        while (count < MAX_SEGMENTS && capacity / (count * 2) >= 64) count *= 2;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment((capacity + count - 1) / count, eviction == Eviction.LRU);
+        }
+    }
+
+    public SubproblemCache(int capacity) {
+        this(capacity, Eviction.LRU);
+    }
+
+    public SubproblemCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Largest side and remaining depth a key can hold
+     */
+    public static final int MAX_SIDE = (1 << 28) - 1;
+    public static final int MAX_DEPTH = (1 << 8) - 1;
+
+    /**
+     * Pack a normalized subproblem into a single key: 28 bits per side, 8 for the depth
+     */
+    public static long key(int L, int W, int depth) {
+        if (((L | W) & ~MAX_SIDE) != 0 || (depth & ~MAX_DEPTH) != 0)
+            throw new IllegalArgumentException("subproblem out of key range: " + L + "x" + W + " depth " + depth);
+        return ((long) L << 36) | ((long) W << 8) | depth;
+    }
+
+    private Segment segment_for(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return segments[(int) (h >>> 32) & (segments.length - 1)];
+    }
+
+    /**
+     * Look up a subproblem, returning its relative layout or null on a miss
+     */
+    public RecursiveBDModule.Result get(long key) {
+        Segment segment = segment_for(key);
+        synchronized (segment) {
+            RecursiveBDModule.Result result = capacity == 0 ? null : segment.get(key);
+            if (result == null) segment.misses++;
+            else segment.hits++;
+            return result;
+        }
+    }
+
+    /**
+     * Store a subproblem result whose blocks are relative to (0, 0)
+     */
+    public void put(long key, RecursiveBDModule.Result result) {
+        if (capacity == 0) return;
+        Segment segment = segment_for(key);
+        synchronized (segment) {
+            segment.put(key, result);
+        }
+    }
+
+    /**
+     * Keep the entries if they belong to an l x w carton, otherwise drop them and hold
+     * that carton's from now on
+     */
+    public synchronized void bind(int l, int w) {
+        if (l == carton_l && w == carton_w) return;
+        clear();
+        carton_l = l;
+        carton_w = w;
+    }
+
+    /**
+     * Drop all entries and reset the counters
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+                segment.hits = 0;
+                segment.misses = 0;
+                segment.evictions = 0;
+            }
+        }
+    }
+
+    public int getCapacity() { return capacity; }
+    public Eviction getEviction() { return eviction; }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) { size += segment.size(); }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        long hits = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) { hits += segment.hits; }
+        }
+        return hits;
+    }
+
+    public long getMisses() {
+        long misses = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) { misses += segment.misses; }
+        }
+        return misses;
+    }
+
+    public long getEvictions() {
+        long evictions = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) { evictions += segment.evictions; }
+        }
+        return evictions;
+    }
+
+    /**
+     * One independently locked slice of the table
+     */
+    @SuppressWarnings("serial")  // never serialized
+    private static class Segment extends LinkedHashMap<Long, RecursiveBDModule.Result> {
+        private final int capacity;
+        private long hits, misses, evictions;
+
+        Segment(int capacity, boolean accessOrder) {
+            super(16, 0.75f, accessOrder);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, RecursiveBDModule.Result> eldest) {
+            if (size() <= capacity) return false;
+            evictions++;
+            return true;
+        }
+    }
+}
@@ -1,143 +1,115 @@
 package packing.algorithm;
 
-import java.util.*;
-
+/**
+ * Raster points (non-negative combinations of the box sides) up to the pallet size.
+ * <p>
+ * Points are kept in one sorted {@code int[]} array next to a lookup table from each
+ * coordinate to the number of points at or below it, so every subproblem query is a
+ * single array read. X and Y use the same points, cut off at the pallet length and width.
+ * Cut positions of a subproblem are a prefix of the array, and callers get the shared
+ * array plus a length instead of copies. The tables may come from a {@link RasterRegistry}
+ * and reach beyond this pallet; they are never written after construction.
+ */
 public class XYGenerator {
-    private int L;
-    private int W;
-    private int l;
-    private int w;
-    private boolean initialized;
-    private List<Integer> full_X;
-    private List<Integer> full_Y;
-    private Map<Pair<Integer, Integer>, Pair<List<Integer>, List<Integer>>> memo;
+    private final int L;
+    private final int W;
+    private final int l;
+    private final int w;
+    private final int[] points;
+    private final int[] counts;  // counts[c] = number of points that are <= c, for c up to max(L, W)
 
     // Constructor
     public XYGenerator(int maxL, int maxW, int palletL, int palletW) {
+        this(maxL, maxW, palletL, palletW, RasterRegistry.Raster.build(palletL, palletW, Math.max(maxL, maxW)));
+    }
+
+    /**
+     * Generator for an L x W pallet that reads a shared raster table of the same carton
+     */
+    XYGenerator(int maxL, int maxW, int palletL, int palletW, RasterRegistry.Raster raster) {
+        if (raster.limit < Math.max(maxL, maxW))
+            throw new IllegalArgumentException("raster table too small: " + raster.limit);
         this.L = maxL;
         this.W = maxW;
         this.l = palletL;
         this.w = palletW;
-        this.initialized = false;
-        this.full_X = new ArrayList<>();
-        this.full_Y = new ArrayList<>();
-        this.memo = new HashMap<>();
-        initialize_XY();  // Precompute full_X and full_Y once
+        this.points = raster.points;
+        this.counts = raster.counts;
     }
 
-    // Private method to initialize full_X and full_Y
-    private void initialize_XY() {
-        if (initialized) return;
-
-        Set<Integer> unique_X = new TreeSet<>();
-        Set<Integer> unique_Y = new TreeSet<>();
-
-        // Compute all possible X coordinates
-        for (int r = 0; r <= L / l; ++r) {
-            for (int s = 0; s <= L / w; ++s) {
-                int value = r * l + s * w;
-                if (value <= L - w) unique_X.add(value);
-            }
-        }
-
-        // Compute all possible Y coordinates
-        for (int t = 0; t <= W / l; ++t) {
-            for (int u = 0; u <= W / w; ++u) {
-                int value = t * l + u * w;
-                if (value <= W - w) unique_Y.add(value);
-            }
-        }
-
-        // Convert to sorted lists
-        full_X = new ArrayList<>(unique_X);
-        full_Y = new ArrayList<>(unique_Y);
-        Collections.sort(full_X);
-        Collections.sort(full_Y);
-
-        initialized = true;
+    /**
+     * Sorted X raster points; only the first {@link #get_X_length} entries are cut positions
+     * of a subproblem
+     */
+    public int[] get_X() {
+        return points;
     }
 
-    // Public method to get filtered X and Y
-    public Pair<List<Integer>, List<Integer>> get_XY(int L, int W) {
-        if (L < w || W < w)
-            return new Pair<>(new ArrayList<>(), new ArrayList<>());  // Return a pair of empty lists
-
-        // Check memo table
-        Pair<Integer, Integer> key = new Pair<>(L, W);
-        if (memo.containsKey(key)) return memo.get(key);
-
-        initialize_XY();  // Ensure full_X and full_Y are initialized
-
-        // Use binary search to extract subset
-        List<Integer> X = new ArrayList<>();
-        List<Integer> Y = new ArrayList<>();
-
-        int xEndIndex = Collections.binarySearch(full_X, L - w + 1);
-        if (xEndIndex < 0) xEndIndex = -xEndIndex - 1;
-        X.addAll(full_X.subList(0, xEndIndex));
-
-        int yEndIndex = Collections.binarySearch(full_Y, W - w + 1);
-        if (yEndIndex < 0) yEndIndex = -yEndIndex - 1;
-        Y.addAll(full_Y.subList(0, yEndIndex));
-
-        // Store result in memoization table
-        Pair<List<Integer>, List<Integer>> result = new Pair<>(X, Y);
-        memo.put(key, result);
-        return result;
+    /**
+     * Sorted Y raster points; only the first {@link #get_Y_length} entries are cut positions
+     * of a subproblem
+     */
+    public int[] get_Y() {
+        return points;
     }
 
-    public int get_zub(int L0, int W0) {
-        if (L0 < w || W0 < w)
-            return 0;
-
-        // Initialize if needed
-        initialize_XY();
-
-        // Use binary search to find appropriate bounds
-        int xEndIndex = Collections.binarySearch(full_X, L0 + 1);
-        if (xEndIndex < 0) xEndIndex = -xEndIndex - 1;
-        if (xEndIndex == 0) return 0;
-
-        int yEndIndex = Collections.binarySearch(full_Y, W0 + 1);
-        if (yEndIndex < 0) yEndIndex = -yEndIndex - 1;
-        if (yEndIndex == 0) return 0;
-
-        // Get the largest valid coordinates
-        int L_star = full_X.get(xEndIndex - 1);
-        int W_star = full_Y.get(yEndIndex - 1);
+    /**
+     * Number of X raster points not exceeding the pallet length
+     */
+    public int get_X_size() {
+        return counts[L];
+    }
 
-        return (L_star * W_star) / (l * w);
+    /**
+     * Number of Y raster points not exceeding the pallet width
+     */
+    public int get_Y_size() {
+        return counts[W];
     }
 
-    // Utility class for pairs
-    public static class Pair<K, V> {
-        private final K first;
-        private final V second;
+    /**
+     * Number of X cut positions usable in a subproblem of the given size
+     */
+    public int get_X_length(int L, int W) {
+        if (L < w || W < w) return 0;
+        return counts[Math.min(L - w, this.L)];
+    }
 
-        public Pair(K first, V second) {
-            this.first = first;
-            this.second = second;
-        }
+    /**
+     * Number of Y cut positions usable in a subproblem of the given size
+     */
+    public int get_Y_length(int L, int W) {
+        if (L < w || W < w) return 0;
+        return counts[Math.min(W - w, this.W)];
+    }
 
-        public K getFirst() {
-            return first;
-        }
+    /**
+     * Number of X raster points not exceeding L, so L reduces to get_X()[index - 1]
+     */
+    public int get_X_index(int L) {
+        return counts[Math.min(L, this.L)];
+    }
 
-        public V getSecond() {
-            return second;
-        }
+    /**
+     * Number of Y raster points not exceeding W, so W reduces to get_Y()[index - 1]
+     */
+    public int get_Y_index(int W) {
+        return counts[Math.min(W, this.W)];
+    }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            Pair<?, ?> pair = (Pair<?, ?>) o;
-            return Objects.equals(first, pair.first) && Objects.equals(second, pair.second);
-        }
+    /**
+     * Largest raster point not exceeding a size no larger than the pallet's longer side;
+     * a rectangle packs exactly like its sides reduced this way
+     */
+    public int reduce(int size) {
+        return points[counts[size] - 1];
+    }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(first, second);
-        }
+    /**
+     * Whether an L x W rectangle lies across the pallet, i.e. its longer side runs along
+     * the pallet's shorter one; such rectangles are solved as their transpose
+     */
+    public boolean transposes(int L, int W) {
+        return this.L >= this.W ? W > L : L > W;
     }
 }
@@ -0,0 +1,363 @@
+package packing;
+
+import packing.algorithm.BlockList;
+import packing.algorithm.IterativeSearch;
+import packing.algorithm.LayoutValidator;
+import packing.algorithm.PalletInstance;
+import packing.algorithm.Placements;
+import packing.algorithm.PortfolioSolver;
+import packing.algorithm.RecursiveBDModule;
+import packing.algorithm.SolutionStore;
+import packing.algorithm.SolveControl;
+import packing.algorithm.XYGenerator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Randomized regression suite for the optimized solver paths.
+ * <p>
+ * Every random instance is solved by a plain reference implementation of the block
+ * decomposition, an exhaustive memoized recursion over the same cuts without bounds,
+ * caching by normal form, cut ordering or pruning, and then by every optimized path:
+ * the sequential and parallel solvers, the iterative search, iterative deepening, the
+ * solution store, the batch solver and the portfolio. Their counts must match the
+ * reference, of the canonical instance for the store and batch paths that solve that
+ * form (the portfolio may beat it), and every layout must pass the
+ * {@link LayoutValidator}, whose sweep is itself checked against pairwise comparison
+ * on small layouts and timed on a large one. The sequential solver must also reproduce
+ * the counts of the solver before these paths, recorded in {@code baseline-counts.txt}
+ * for fixed seeds. Exits with status 1 on any failure.
+ * <pre>
+ * java -cp target/classes:target/test-classes packing.RegressionRunner [--seed S] [--iterations K]
+ *     [--depth N] [--span S] [--large BOXES]
+ * </pre>
+ */
+public class RegressionRunner {
+    private static final int MAX_REPORTED = 20;
+    private static final String BASELINE = "baseline-counts.txt";
+
+    private long seed = System.nanoTime();
+    private int iterations = 50;
+    private int max_depth = 3;
+    private int span = 30;
+    private int large = 200_000;
+
+    private final List<String> failures = new ArrayList<>();
+    private int checks;
+
+    public static void main(String[] args) throws Exception {
+        RegressionRunner runner = new RegressionRunner();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--seed" -> runner.seed = Long.parseLong(value(args, ++i));
+                    case "--iterations" -> runner.iterations = positive(args, ++i);
+                    case "--depth" -> runner.max_depth = positive(args, ++i);
+                    case "--span" -> runner.span = positive(args, ++i);
+                    case "--large" -> runner.large = positive(args, ++i);
+                    default -> throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+            if (runner.span < 4) throw new IllegalArgumentException("--span must be at least 4");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: java -cp target/classes:target/test-classes packing.RegressionRunner"
+                    + " [--seed S] [--iterations K] [--depth N] [--span S] [--large BOXES]");
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        runner.run();
+        System.err.printf("%d checks in %.3f s, %d failures (seed %d)%n", runner.checks,
+                (System.nanoTime() - start) / 1e9, runner.failures.size(), runner.seed);
+        for (String failure : runner.failures.subList(0, Math.min(MAX_REPORTED, runner.failures.size()))) {
+            System.err.println("  " + failure);
+        }
+        if (!runner.failures.isEmpty()) System.exit(1);
+    }
+
+    /**
+     * Check the baseline counts, solve the random instances on every path and time the
+     * validator on a large layout
+     */
+    public void run() throws IOException {
+        check_baseline();
+        Random random = new Random(seed);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Path store_path = Files.createTempFile("regression", ".store");
+        Files.delete(store_path);  // the store writes its own header into a new file
+        try (SolutionStore store = new SolutionStore(store_path)) {
+            RecursiveBDModule sequential = validating(new RecursiveBDModule(null));
+            RecursiveBDModule parallel = validating(new RecursiveBDModule(pool));
+            RecursiveBDModule stored = validating(new RecursiveBDModule(null));
+            stored.setSolutionStore(store);
+            PortfolioSolver portfolio = new PortfolioSolver();
+
+            List<PalletInstance> batch = new ArrayList<>(iterations);
+            List<Integer> expected = new ArrayList<>(iterations);
+            for (int i = 0; i < iterations; i++) {
+                int w = 3 + random.nextInt(6);
+                int l = w + random.nextInt(6);
+                if (random.nextBoolean()) {
+                    int swap = l;
+                    l = w;
+                    w = swap;
+                }
+                int L0 = Math.min(l, w) + random.nextInt(span - Math.min(l, w) + 1);
+                int W0 = Math.min(l, w) + random.nextInt(span - Math.min(l, w) + 1);
+                int N0 = 1 + random.nextInt(max_depth);
+                int x_offset = random.nextInt(3) * 100, y_offset = random.nextInt(3) * 100;
+                String name = L0 + "x" + W0 + " with " + l + "x" + w + " boxes at N=" + N0;
+
+                Reference reference = new Reference(L0, W0, l, w);
+                int count = reference.solve(N0);
+                int deepest = 0;
+                for (int depth = 1; depth <= N0; depth++) deepest = Math.max(deepest, reference.solve(depth));
+
+                // Cut positions depend on which box side comes first, so paths that solve the
+                // canonical form can find more than the instance as given
+                PalletInstance key = new PalletInstance(L0, W0, N0, l, w).canonical();
+                int canonical = new Reference(key.getL0(), key.getW0(), key.getBoxL(), key.getBoxW()).solve(N0);
+
+                try {
+                    RecursiveBDModule.Result result = sequential.palletLoading(L0, W0, 0, N0, l, w, x_offset, y_offset);
+                    expect(name, "sequential", count, result.getCount());
+                    check_validator(name, result, L0, W0, x_offset, y_offset);
+
+                    expect(name, "parallel", count, parallel.palletLoading(L0, W0, 0, N0, l, w).getCount());
+
+                    IterativeSearch search = sequential.iterativeSearch(L0, W0, N0, l, w, new SolveControl());
+                    search.run();
+                    validate(name, "iterative", search.getResult(), L0, W0);
+                    expect(name, "iterative", count, search.getResult().getCount());
+
+                    RecursiveBDModule.Result deepened = sequential.palletLoadingDeepening(L0, W0, l, w, N0,
+                            new SolveControl(), null);
+                    expect(name, "deepening", deepest, deepened.getCount());
+
+                    // The transposed instance is a store hit, mapped back from the canonical layout
+                    expect(name, "store miss", canonical, stored.palletLoading(L0, W0, 0, N0, l, w).getCount());
+                    expect(name, "store hit", canonical, stored.palletLoading(W0, L0, 0, N0, w, l).getCount());
+
+                    RecursiveBDModule.Result raced = portfolio.solve(new PalletInstance(L0, W0, N0, l, w));
+                    validate(name, "portfolio", raced, L0, W0);
+                    checks++;
+                    if (raced.getCount() < count) {
+                        failures.add(name + ": portfolio found " + raced.getCount() + " < reference " + count);
+                    }
+                } catch (RuntimeException e) {
+                    failures.add(name + ": " + e);
+                }
+                batch.add(new PalletInstance(L0, W0, N0, l, w));
+                expected.add(canonical);
+            }
+
+            try {
+                List<RecursiveBDModule.Result> results = parallel.palletLoading(batch);
+                for (int i = 0; i < batch.size(); i++) {
+                    PalletInstance instance = batch.get(i);
+                    String name = instance.toString();
+                    expect(name, "batch", expected.get(i), results.get(i).getCount());
+                    validate(name, "batch", results.get(i), instance.getL0(), instance.getW0());
+                }
+            } catch (RuntimeException e) {
+                failures.add("batch: " + e);
+            }
+        } finally {
+            pool.shutdown();
+            Files.deleteIfExists(store_path);
+        }
+
+        time_large(random);
+    }
+
+    /**
+     * Each line of the baseline holds the seed, L0, W0, l, w, N0 and the count the solver
+     * before the optimized paths found for that instance
+     */
+    private void check_baseline() throws IOException {
+        InputStream in = RegressionRunner.class.getResourceAsStream(BASELINE);
+        if (in == null) {
+            failures.add("baseline: " + BASELINE + " not on the classpath");
+            return;
+        }
+        RecursiveBDModule sequential = new RecursiveBDModule(null);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] fields = line.trim().split("\\s+");
+                int L0 = Integer.parseInt(fields[1]), W0 = Integer.parseInt(fields[2]);
+                int l = Integer.parseInt(fields[3]), w = Integer.parseInt(fields[4]);
+                int N0 = Integer.parseInt(fields[5]), count = Integer.parseInt(fields[6]);
+                String name = L0 + "x" + W0 + " with " + l + "x" + w + " boxes at N=" + N0
+                        + " (seed " + fields[0] + ")";
+                try {
+                    expect(name, "baseline", count, sequential.palletLoading(L0, W0, 0, N0, l, w).getCount());
+                } catch (RuntimeException e) {
+                    failures.add(name + ": " + e);
+                }
+            }
+        }
+    }
+
+    private static RecursiveBDModule validating(RecursiveBDModule solver) {
+        solver.setValidateResults(true);
+        return solver;
+    }
+
+    private void expect(String name, String path, int expected, int actual) {
+        checks++;
+        if (expected != actual) failures.add(name + ": " + path + " found " + actual + ", reference " + expected);
+    }
+
+    private void validate(String name, String path, RecursiveBDModule.Result result, int L0, int W0) {
+        checks++;
+        LayoutValidator.Report report = LayoutValidator.check(result, L0, W0);
+        if (!report.isValid()) failures.add(name + ": " + path + " " + report);
+    }
+
+    /**
+     * The sweep must agree with pairwise comparison on the layout, and on the layout with
+     * one box moved onto another
+     */
+    private void check_validator(String name, RecursiveBDModule.Result result, int L0, int W0,
+                                 int x_offset, int y_offset) {
+        Placements placements = result.getPlacements();
+        BlockList boxes = new BlockList(placements.size());
+        placements.forEach(boxes::add);
+        checks++;
+        if (!LayoutValidator.check_rectangles(boxes, x_offset, y_offset, L0, W0).isValid() || overlapping(boxes)) {
+            failures.add(name + ": validator rejects a layout without overlaps");
+        }
+        if (boxes.size() < 2) return;
+
+        BlockList moved = new BlockList(boxes.size());
+        for (int i = 0; i < boxes.size(); i++) {
+            int from = i == boxes.size() - 1 ? 0 : i;
+            moved.add(boxes.getX(from), boxes.getY(from), boxes.getL(i), boxes.getW(i));
+        }
+        checks++;
+        boolean sweep = !LayoutValidator.check_rectangles(moved, x_offset, y_offset, L0, W0).isValid();
+        if (sweep != overlapping(moved)) failures.add(name + ": validator and pairwise check disagree");
+    }
+
+    /**
+     * Whether any two rectangles of positive area overlap, by comparing every pair
+     */
+    private static boolean overlapping(BlockList boxes) {
+        for (int i = 0; i < boxes.size(); i++) {
+            for (int j = i + 1; j < boxes.size(); j++) {
+                if (boxes.getL(i) == 0 || boxes.getW(i) == 0 || boxes.getL(j) == 0 || boxes.getW(j) == 0) continue;
+                if (boxes.getX(i) < boxes.getX(j) + boxes.getL(j) && boxes.getX(j) < boxes.getX(i) + boxes.getL(i)
+                        && boxes.getY(i) < boxes.getY(j) + boxes.getW(j) && boxes.getY(j) < boxes.getY(i) + boxes.getW(i)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Validate a layout of about {@link #large} boxes in four blocks of both orientations
+     */
+    private void time_large(Random random) {
+        int l = 4 + random.nextInt(4), w = 3 + random.nextInt(l - 2);
+        int side = (int) Math.ceil(Math.sqrt((double) large * l * w));
+        int half = side / 2;
+        BlockList blocks = new BlockList(4);
+        blocks.add(0, 0, half, half);
+        blocks.add(half, 0, side - half, half);
+        blocks.add(0, half, half, side - half);
+        blocks.add(half, half, side - half, side - half);
+        int count = new Placements(blocks, l, w).size();
+        RecursiveBDModule.Result layout = new RecursiveBDModule.Result(count, blocks, false, false, l, w);
+
+        long start = System.nanoTime();
+        LayoutValidator.Report report = LayoutValidator.check(layout, side, side);
+        long nanos = System.nanoTime() - start;
+        checks++;
+        if (!report.isValid()) failures.add("large layout: " + report);
+        System.err.printf("validated %d boxes on a %dx%d pallet in %.1f ms%n",
+                report.getBoxes(), side, side, nanos / 1e6);
+    }
+
+    /**
+     * Block decomposition by exhaustive recursion: the best count of a rectangle at a depth
+     * is its homogeneous count or the best sum over all non-symmetrical five-block cuts of
+     * its sub-blocks one level deeper, or of their homogeneous counts at the maximum depth
+     */
+    private static class Reference {
+        private final int L0, W0, l, w;
+        private final XYGenerator xy_gen;
+        private final Map<Long, Integer> memo = new HashMap<>();
+        private int N;
+
+        Reference(int L0, int W0, int l, int w) {
+            this.L0 = L0;
+            this.W0 = W0;
+            this.l = l;
+            this.w = w;
+            this.xy_gen = new XYGenerator(L0, W0, l, w);
+        }
+
+        int solve(int depth) {
+            N = depth;
+            memo.clear();
+            return best(L0, W0, 0);
+        }
+
+        private int best(int L, int W, int n) {
+            long key = ((long) L << 40) | ((long) W << 16) | n;
+            Integer known = memo.get(key);
+            if (known != null) return known;
+
+            int best = RecursiveBDModule.compute_zlb(L, W, l, w);
+            int[] X = xy_gen.get_X(), Y = xy_gen.get_Y();
+            int nx = xy_gen.get_X_length(L, W), ny = xy_gen.get_Y_length(L, W);
+            for (int a = 0; a < nx; a++) {
+                for (int b = a; b < nx; b++) {
+                    for (int c = 0; c < ny; c++) {
+                        for (int d = c; d < ny; d++) {
+                            int x1 = X[a], x2 = X[b], y1 = Y[c], y2 = Y[d];
+                            if (RecursiveBDModule.isSymmetrical(L, W, x1, x2, y1, y2)) continue;
+                            int[][] sub = {{x1, W - y1}, {L - x1, W - y2}, {x2 - x1, y2 - y1}, {x2, y1}, {L - x2, y2}};
+                            int sum = 0;
+                            for (int[] block : sub) {
+                                sum += n < N ? best(block[0], block[1], n + 1)
+                                        : RecursiveBDModule.compute_zlb(block[0], block[1], l, w);
+                            }
+                            best = Math.max(best, sum);
+                        }
+                    }
+                }
+            }
+            memo.put(key, best);
+            return best;
+        }
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) throw new IllegalArgumentException("missing value for " + args[i - 1]);
+        return args[i];
+    }
+
+    private static int positive(String[] args, int i) {
+        int value;
+        try {
+            value = Integer.parseInt(value(args, i));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not an integer: " + args[i]);
+        }
+        if (value <= 0) throw new IllegalArgumentException(args[i - 1] + " must be positive: " + value);
+        return value;
+    }
+}